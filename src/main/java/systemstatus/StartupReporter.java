@@ -0,0 +1,47 @@
+package systemstatus;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Logger oppstartstid (fra JVM-start), resident minne og brukt heap når applikasjonen er klar,
+ * slik at agent-profilen og full profil kan sammenlignes.
+ */
+@Component
+public class StartupReporter {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupReporter.class);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void report(ApplicationReadyEvent event) {
+        Environment env = event.getApplicationContext().getEnvironment();
+        long uptimeMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        Runtime rt = Runtime.getRuntime();
+        long heapUsedMb = (rt.totalMemory() - rt.freeMemory()) / (1024 * 1024);
+        long heapMaxMb = rt.maxMemory() / (1024 * 1024);
+
+        log.info("Klar etter {} ms (profiler {}), RSS {} MB, heap {}/{} MB",
+            uptimeMs, String.join(",", env.getActiveProfiles()), residentMb(), heapUsedMb, heapMaxMb);
+    }
+
+    private static long residentMb() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.trim().split("\\s+")[1]) / 1024;
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {
+        }
+        return -1;
+    }
+}
@@ -2,8 +2,9 @@ package systemstatus;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication public class SystemStatusApiApplication{ 
+@SpringBootApplication @EnableScheduling public class SystemStatusApiApplication{ 
     public static void main(String[] args){ 
         SpringApplication.run(SystemStatusApiApplication.class, args); 
     }
@@ -0,0 +1,176 @@
+package systemstatus.api;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import systemstatus.util.Bulkhead;
+
+/**
+ * Adgangskontroll foran de tunge endepunktene, slik at de ikke tar alle servlet-trådene og
+ * lar de lette statusendepunktene (/memory, /disks, /network ...) henge.
+ * Hver rute har sin egen bulkhead, så en storm mot f.eks. /honeypot/ip ikke stenger ute /honeypot/summary.
+ * I tillegg har hver ressursgruppe en felles grense: honeypot-kall deler databasepoolen, kall som starter
+ * prosesser (mpstat, docker, nvme ...) deler CPU-en, og klyngekall går mot de samme nodene.
+ * Full kø gir 429, for lang ventetid gir 503, begge med Retry-After.
+ */
+@Component
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private static final Set<String> SUBPROCESS_ROUTES = Set.of("/status", "/cpu", "/nvme", "/docker");
+    // Ukjente stier skal ikke kunne lage ubegrenset mange bulkheads
+    private static final int MAX_ROUTES = 64;
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionFilter.class);
+
+    private final Group database;
+    private final Group subprocess;
+    private final Group cluster;
+    private final String retryAfter;
+
+    public AdmissionFilter(@Value("${admission.db.max-concurrent}") int dbConcurrent,
+                           @Value("${admission.db.max-queue}") int dbQueue,
+                           @Value("${admission.db.route-max-concurrent}") int dbRouteConcurrent,
+                           @Value("${admission.db.route-max-queue}") int dbRouteQueue,
+                           @Value("${admission.subprocess.max-concurrent}") int subprocessConcurrent,
+                           @Value("${admission.subprocess.max-queue}") int subprocessQueue,
+                           @Value("${admission.subprocess.route-max-concurrent}") int subprocessRouteConcurrent,
+                           @Value("${admission.subprocess.route-max-queue}") int subprocessRouteQueue,
+                           @Value("${admission.cluster.max-concurrent}") int clusterConcurrent,
+                           @Value("${admission.cluster.max-queue}") int clusterQueue,
+                           @Value("${admission.queue-timeout-ms}") long queueTimeoutMs,
+                           @Value("${admission.retry-after-s}") int retryAfterSeconds) {
+        this.database = new Group(new Bulkhead("database", dbConcurrent, dbQueue, queueTimeoutMs),
+            dbRouteConcurrent, dbRouteQueue, queueTimeoutMs);
+        this.subprocess = new Group(new Bulkhead("subprocess", subprocessConcurrent, subprocessQueue, queueTimeoutMs),
+            subprocessRouteConcurrent, subprocessRouteQueue, queueTimeoutMs);
+        // /cluster/status er eneste klyngerute, så gruppegrensen er også rutegrensen
+        this.cluster = new Group(new Bulkhead("cluster", clusterConcurrent, clusterQueue, queueTimeoutMs),
+            clusterConcurrent, clusterQueue, queueTimeoutMs);
+        this.retryAfter = String.valueOf(retryAfterSeconds);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Group group = groupFor(path);
+        if (group == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        Bulkhead route = group.route(routeKey(path));
+        Bulkhead.Admission admission = enter(route);
+        if (admission != Bulkhead.Admission.ADMITTED) {
+            reject(response, route, admission);
+            return;
+        }
+        admission = enter(group.total);
+        if (admission != Bulkhead.Admission.ADMITTED) {
+            route.exit();
+            reject(response, group.total, admission);
+            return;
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                group.total.exit();
+                route.exit();
+            }
+        };
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            // Strømmende svar (tidslinjer) holder plassen til den asynkrone delen er ferdig
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseListener(release));
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    private static Bulkhead.Admission enter(Bulkhead bulkhead) {
+        try {
+            return bulkhead.tryEnter();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Bulkhead.Admission.TIMED_OUT;
+        }
+    }
+
+    private Group groupFor(String path) {
+        // Dashboardet serveres fra et ferdig øyeblikksbilde (DashboardSnapshotService) og trenger ingen plass
+        if (path.equals("/honeypot/dashboard")) return null;
+        if (path.startsWith("/honeypot/")) return database;
+        if (path.startsWith("/cluster/")) return cluster;
+        if (SUBPROCESS_ROUTES.contains(path)) return subprocess;
+        return null;
+    }
+
+    // Stivariabler tas ut, så /honeypot/ip/1.2.3.4 og /honeypot/ip/5.6.7.8 deler bulkhead
+    // (/honeypot/ip), mens tidslinjen får sin egen (/honeypot/ip/timeline)
+    private static String routeKey(String path) {
+        if (!path.startsWith("/honeypot/")) return path;
+        String[] segments = path.split("/");
+        if (segments.length < 3) return path;
+        String key = "/honeypot/" + segments[2];
+        return segments.length > 4 ? key + "/" + segments[4] : key;
+    }
+
+    private static final class Group {
+        final Bulkhead total;
+        final Map<String, Bulkhead> routes = new ConcurrentHashMap<>();
+        final int routeConcurrent;
+        final int routeQueue;
+        final long queueTimeoutMs;
+
+        Group(Bulkhead total, int routeConcurrent, int routeQueue, long queueTimeoutMs) {
+            this.total = total;
+            this.routeConcurrent = routeConcurrent;
+            this.routeQueue = routeQueue;
+            this.queueTimeoutMs = queueTimeoutMs;
+        }
+
+        Bulkhead route(String key) {
+            Bulkhead route = routes.get(key);
+            if (route != null) return route;
+            String name = routes.size() < MAX_ROUTES ? key : total.name() + ":other";
+            return routes.computeIfAbsent(name, k -> new Bulkhead(k, routeConcurrent, routeQueue, queueTimeoutMs));
+        }
+    }
+
+    private void reject(HttpServletResponse response, Bulkhead bulkhead, Bulkhead.Admission admission) throws IOException {
+        HttpStatus status = admission == Bulkhead.Admission.QUEUE_FULL
+            ? HttpStatus.TOO_MANY_REQUESTS
+            : HttpStatus.SERVICE_UNAVAILABLE;
+        log.debug("avviste kall mot {}: {}", bulkhead.name(), admission);
+        response.setHeader("Retry-After", retryAfter);
+        response.sendError(status.value());
+    }
+
+    private record ReleaseListener(Runnable release) implements AsyncListener {
+        @Override public void onComplete(AsyncEvent event) { release.run(); }
+        @Override public void onError(AsyncEvent event) { release.run(); }
+        @Override public void onTimeout(AsyncEvent event) { release.run(); }
+        @Override public void onStartAsync(AsyncEvent event) { }
+    }
+}
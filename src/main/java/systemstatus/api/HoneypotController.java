@@ -2,24 +2,71 @@ package systemstatus.api;
 
 import java.util.List;
 
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import systemstatus.gto.*;
+import systemstatus.service.AttackerClusterService;
+import systemstatus.service.DashboardSnapshotService;
+import systemstatus.service.GeoIndexService;
 import systemstatus.service.HoneypotService;
+import systemstatus.service.SearchIndexService;
+import systemstatus.service.TimelineService;
 
 @RestController
+@Profile("!agent")
 @RequestMapping("/honeypot")
 public class HoneypotController {
 
     private final HoneypotService service;
-
-    public HoneypotController(HoneypotService service) {
+    private final GeoIndexService geoIndex;
+    private final SearchIndexService searchIndex;
+    private final TimelineService timeline;
+    private final AttackerClusterService clusters;
+    private final DashboardSnapshotService dashboard;
+
+    public HoneypotController(HoneypotService service, GeoIndexService geoIndex, SearchIndexService searchIndex,
+                              TimelineService timeline, AttackerClusterService clusters,
+                              DashboardSnapshotService dashboard) {
         this.service = service;
+        this.geoIndex = geoIndex;
+        this.searchIndex = searchIndex;
+        this.timeline = timeline;
+        this.clusters = clusters;
+        this.dashboard = dashboard;
     }
 
     @GetMapping("/dashboard")
-    public HoneypotDashboardGto dashboard() {
-        return service.getDashboard();
+    public ResponseEntity<byte[]> dashboard(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        DashboardSnapshotService.Snapshot snapshot = dashboard.getSnapshot();
+        if (snapshot == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String etag = gzip ? snapshot.gzipEtag() : snapshot.etag();
+        if (notModified(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .build();
+        }
+
+        var response = ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .eTag(etag)
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.gzip());
+        }
+        return response.body(snapshot.json());
     }
     @GetMapping("/summary")
     public HoneypotSummaryGto summary() {
@@ -65,10 +112,49 @@ public class HoneypotController {
         return service.getGeoData();
     }
 
+    @GetMapping(value = "/geo", params = "zoom")
+    public List<GeoCellGto> geoCells(@RequestParam int zoom,
+                                     @RequestParam(defaultValue = "-90") double minLat,
+                                     @RequestParam(defaultValue = "-180") double minLon,
+                                     @RequestParam(defaultValue = "90") double maxLat,
+                                     @RequestParam(defaultValue = "180") double maxLon) {
+        return geoIndex.getCells(zoom, minLat, minLon, maxLat, maxLon);
+    }
+
+    @GetMapping("/clusters")
+    public List<AttackerClusterGto> clusters(@RequestParam(defaultValue = "20") int limit) {
+        return clusters.getClusters(Math.min(limit, 500));
+    }
+
     @GetMapping("/ip/{ip}")
         public IpDetailGto ipDetail(@PathVariable String ip) {
         return service.getIpDetail(ip);
     }
+    @GetMapping(value = "/ip/{ip}/timeline", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody ipTimeline(@PathVariable String ip,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(defaultValue = "100") int limit) {
+        return timeline(TimelineService.Filter.IP, ip, cursor, limit);
+    }
+
+    @GetMapping(value = "/session/{session}/timeline", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody sessionTimeline(@PathVariable String session,
+                                                 @RequestParam(required = false) String cursor,
+                                                 @RequestParam(defaultValue = "100") int limit) {
+        return timeline(TimelineService.Filter.SESSION, session, cursor, limit);
+    }
+
+    private StreamingResponseBody timeline(TimelineService.Filter filter, String value, String cursor, int limit) {
+        TimelineService.Cursor parsed;
+        try {
+            parsed = cursor == null ? null : TimelineService.Cursor.parse(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        int pageSize = Math.max(1, Math.min(limit, 1000));
+        return out -> timeline.writeTimeline(filter, value, parsed, pageSize, out);
+    }
+
     @GetMapping("/recent-tcpip")
     public List<TcpipEventGto> recentTcpip(@RequestParam(defaultValue = "20") int limit) {
         return service.getRecentTcpip(Math.min(limit, 100));
@@ -88,4 +174,63 @@ public class HoneypotController {
     public List<MalwareGto> topMalware() {
         return service.getMalware();
     }
-}
\ No newline at end of file
+
+    @GetMapping("/search")
+    public SearchResultGto search(@RequestParam String q,
+                                  @RequestParam(defaultValue = "20") int limit,
+                                  @RequestParam(required = false) Long beforeCommand,
+                                  @RequestParam(required = false) Long beforeLogin) {
+        if (q.length() < 3) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q må ha minst tre tegn");
+        }
+        return searchIndex.search(q, Math.max(1, Math.min(limit, 100)), beforeCommand, beforeLogin);
+    }
+
+    // If-None-Match etter RFC 9110: "*", eller en kommaseparert liste der W/-prefiks ignoreres (svak sammenligning)
+    private static boolean notModified(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        String header = ifNoneMatch.trim();
+        if (header.equals("*")) return true;
+
+        String opaque = etag.startsWith("W/") ? etag.substring(2) : etag;
+        int i = 0;
+        while (i < header.length()) {
+            char c = header.charAt(i);
+            if (c == ',' || c == ' ' || c == '\t') {
+                i++;
+                continue;
+            }
+            int start = header.startsWith("W/", i) ? i + 2 : i;
+            if (start >= header.length() || header.charAt(start) != '"') return false;
+            int end = header.indexOf('"', start + 1);
+            if (end < 0) return false;
+            if (header.regionMatches(start, opaque, 0, opaque.length()) && end + 1 - start == opaque.length()) return true;
+            i = end + 1;
+        }
+        return false;
+    }
+
+    // Accept-Encoding med q-verdier: "gzip;q=0" avslår gzip, og "*" gjelder bare når gzip ikke er nevnt
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        double gzipQ = -1, anyQ = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim();
+            double q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip")) gzipQ = Math.max(gzipQ, q);
+            else if (coding.equals("*")) anyQ = q;
+        }
+        return gzipQ >= 0 ? gzipQ > 0 : anyQ > 0;
+    }
+}
@@ -3,18 +3,22 @@ package systemstatus.api;
 import java.util.List;
 
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import systemstatus.gto.*;
+import systemstatus.service.StatusVersionService;
 import systemstatus.service.SystemStatusService;
 
 @RestController
 public class SystemStatusController {
 
     private final SystemStatusService service;
+    private final StatusVersionService versionService;
 
-    public SystemStatusController(SystemStatusService service){
+    public SystemStatusController(SystemStatusService service, StatusVersionService versionService){
         this.service = service;
+        this.versionService = versionService;
     }
 
     @GetMapping("/status")
@@ -22,6 +26,11 @@ public class SystemStatusController {
         return service.getStatus();
     }
 
+    @GetMapping(value = "/status", params = "since")
+    public StatusDeltaGto statusSince(@RequestParam long since) throws Exception {
+        return versionService.getStatusSince(since);
+    }
+
     @GetMapping("/cpu")
     public CpuStatusGto cpu() throws Exception {
         return service.getCpu();
@@ -42,6 +51,16 @@ public class SystemStatusController {
         return service.getDisks();
     }
 
+    @GetMapping("/diskio")
+    public List<DiskIoGto> getDiskIo(){
+        return service.getDiskIo();
+    }
+
+    @GetMapping("/network")
+    public NetworkStatusGto getNetwork(){
+        return service.getNetwork();
+    }
+
     @GetMapping("/kernel")
     public KernelStatusGto getKernel() throws Exception{
         return service.getKernel();
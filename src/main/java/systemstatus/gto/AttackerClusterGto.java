@@ -0,0 +1,9 @@
+package systemstatus.gto;
+
+import java.util.List;
+
+public record AttackerClusterGto(
+    String id,
+    int size,
+    List<String> ips
+) {}
@@ -0,0 +1,11 @@
+package systemstatus.gto;
+
+public record ContainerUsageGto(
+    double cpuPercent,
+    long memoryBytes,
+    Long memoryMaxBytes,
+    long ioReadBytes,
+    long ioWriteBytes,
+    double ioReadKBps,
+    double ioWriteKBps
+) {}
@@ -0,0 +1,14 @@
+package systemstatus.gto;
+
+public record DiskIoGto(
+    String device,
+    String mountPoint,
+    double readIops,
+    double writeIops,
+    double readKBps,
+    double writeKBps,
+    double readLatencyMs,
+    double writeLatencyMs,
+    double utilPercent,
+    double queueDepth
+) {}
@@ -5,5 +5,6 @@ public record DockerStatusGto(
     String id,
     String image,
     String uptime,
-    String runningSince
+    String runningSince,
+    ContainerUsageGto usage
 ){}
\ No newline at end of file
@@ -0,0 +1,8 @@
+package systemstatus.gto;
+
+public record GeoCellGto(
+    double latitude,
+    double longitude,
+    long count,
+    int uniqueIps
+) {}
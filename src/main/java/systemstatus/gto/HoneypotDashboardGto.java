@@ -1,6 +1,7 @@
 package systemstatus.gto;
 
 import java.util.List;
+import java.util.Map;
 
 public record HoneypotDashboardGto(
     HoneypotSummaryGto summary,
@@ -15,5 +16,6 @@ public record HoneypotDashboardGto(
     List<TcpipEventGto> recentTcpip,
     List<FileTransferGto> recentFiles,
     List<MalwareGto> malware,
-    List<DestinationGto> destinations
+    List<DestinationGto> destinations,
+    Map<String, String> updatedAt
 ) {}
\ No newline at end of file
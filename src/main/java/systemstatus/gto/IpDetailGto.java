@@ -19,5 +19,7 @@ public record IpDetailGto(
     List<CommandGto> recentCommands,
     List<CredentialGto> topCredentials,
     List<TcpipEventGto> recentTcpip,
-    List<FileTransferGto> recentFiles
+    List<FileTransferGto> recentFiles,
+    List<TopCommandGto> topCommands,
+    List<SimilarIpGto> similarIps
 ) {}
\ No newline at end of file
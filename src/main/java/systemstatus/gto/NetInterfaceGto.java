@@ -0,0 +1,13 @@
+package systemstatus.gto;
+
+public record NetInterfaceGto(
+    String name,
+    double rxBytesPerSec,
+    double txBytesPerSec,
+    double rxPacketsPerSec,
+    double txPacketsPerSec,
+    long rxDrops,
+    long txDrops,
+    long rxErrors,
+    long txErrors
+) {}
@@ -0,0 +1,13 @@
+package systemstatus.gto;
+
+import java.util.List;
+import java.util.Map;
+
+public record NetworkStatusGto(
+    List<NetInterfaceGto> interfaces,
+    Map<String, Integer> tcpStates,
+    long tcpInUse,
+    long tcpTimeWait,
+    long tcpOrphan,
+    long udpInUse
+) {}
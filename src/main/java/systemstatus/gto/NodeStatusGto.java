@@ -3,5 +3,6 @@ package systemstatus.gto;
 public record NodeStatusGto(
     String ip,
     SystemStatusGto status,
-    Boolean reachable
+    Boolean reachable,
+    Integer containers
 ) {}
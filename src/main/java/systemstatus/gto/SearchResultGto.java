@@ -0,0 +1,10 @@
+package systemstatus.gto;
+
+import java.util.List;
+
+public record SearchResultGto(
+    List<CommandGto> commands,
+    List<LoginAttemptGto> logins,
+    Long nextCommandCursor,
+    Long nextLoginCursor
+) {}
@@ -0,0 +1,6 @@
+package systemstatus.gto;
+
+public record SimilarIpGto(
+    String ip,
+    double similarity
+) {}
@@ -0,0 +1,19 @@
+package systemstatus.gto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record StatusDeltaGto(
+    long version,
+    String instance,
+    CpuStatusGto cpu,
+    NvmeStatusGto nvme,
+    MemoryStatusGto memory,
+    List<DiskStatusGto> disks,
+    KernelStatusGto kernel,
+    List<DockerStatusGto> dockers,
+    List<DiskIoGto> diskIo,
+    NetworkStatusGto network
+){}
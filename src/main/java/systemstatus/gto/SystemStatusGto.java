@@ -8,5 +8,7 @@ public record SystemStatusGto(
     MemoryStatusGto memory,
     List<DiskStatusGto> disks,
     KernelStatusGto kernel,
-    List<DockerStatusGto> dockers
+    List<DockerStatusGto> dockers,
+    List<DiskIoGto> diskIo,
+    NetworkStatusGto network
 ){}
\ No newline at end of file
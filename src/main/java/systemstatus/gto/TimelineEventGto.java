@@ -0,0 +1,13 @@
+package systemstatus.gto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TimelineEventGto(
+    String timestamp,
+    String type,
+    LoginAttemptGto login,
+    CommandGto command,
+    TcpipEventGto tcpip,
+    FileTransferGto file
+) {}
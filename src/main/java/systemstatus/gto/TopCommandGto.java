@@ -2,5 +2,6 @@ package systemstatus.gto;
 
 public record TopCommandGto(
     String input,
-    long count
+    long count,
+    String fingerprint
 ) {}
\ No newline at end of file
@@ -0,0 +1,131 @@
+package systemstatus.ingest;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import systemstatus.util.CommandFingerprint;
+import systemstatus.util.PgCopyText;
+
+/**
+ * Skriver en batch med events til cowrie-tabellene i én transaksjon. Radene kopieres inn i midlertidige
+ * tabeller med COPY FROM STDIN og flyttes derfra med INSERT ... ON CONFLICT DO NOTHING, slik at events som
+ * leses på nytt etter en restart ikke gir duplikater. Ingest-posisjonen lagres i samme transaksjon.
+ */
+public class CowrieCopyWriter {
+
+    private static final String STAGING = """
+        CREATE TEMP TABLE IF NOT EXISTS stage_sessions (session_id TEXT, src_ip TEXT, started_at TIMESTAMPTZ) ON COMMIT DELETE ROWS;
+        CREATE TEMP TABLE IF NOT EXISTS stage_closes (session_id TEXT, ended_at TIMESTAMPTZ) ON COMMIT DELETE ROWS;
+        CREATE TEMP TABLE IF NOT EXISTS stage_logins (event_id TEXT, session_id TEXT, timestamp TIMESTAMPTZ, src_ip TEXT,
+            username TEXT, password TEXT, success BOOLEAN) ON COMMIT DELETE ROWS;
+        CREATE TEMP TABLE IF NOT EXISTS stage_commands (event_id TEXT, session_id TEXT, timestamp TIMESTAMPTZ, src_ip TEXT,
+            input TEXT, fingerprint BIGINT) ON COMMIT DELETE ROWS;
+        CREATE TEMP TABLE IF NOT EXISTS stage_tcpip (event_id TEXT, session_id TEXT, timestamp TIMESTAMPTZ, src_ip TEXT,
+            dst_ip TEXT, dst_port INTEGER, event_type TEXT, data TEXT, ja4h TEXT) ON COMMIT DELETE ROWS;
+        CREATE TEMP TABLE IF NOT EXISTS stage_files (event_id TEXT, session_id TEXT, timestamp TIMESTAMPTZ, src_ip TEXT,
+            event_type TEXT, filename TEXT, shasum TEXT, duplicate BOOLEAN) ON COMMIT DELETE ROWS;
+        """;
+
+    private static final String MERGE = """
+        INSERT INTO cowrie_sessions (session_id, src_ip, started_at)
+            SELECT session_id, src_ip, started_at FROM stage_sessions
+            ON CONFLICT (session_id) DO NOTHING;
+        UPDATE cowrie_sessions s SET ended_at = c.ended_at
+            FROM stage_closes c WHERE s.session_id = c.session_id;
+        INSERT INTO cowrie_logins (event_id, session_id, timestamp, src_ip, username, password, success)
+            SELECT * FROM stage_logins
+            ON CONFLICT (event_id) DO NOTHING;
+        INSERT INTO cowrie_commands (event_id, session_id, timestamp, src_ip, input, fingerprint)
+            SELECT * FROM stage_commands
+            ON CONFLICT (event_id) DO NOTHING;
+        INSERT INTO cowrie_tcpip (event_id, session_id, timestamp, src_ip, dst_ip, dst_port, event_type, data, ja4h)
+            SELECT * FROM stage_tcpip
+            ON CONFLICT (event_id) DO NOTHING;
+        INSERT INTO cowrie_file_transfers (event_id, session_id, timestamp, src_ip, event_type, filename, shasum, duplicate)
+            SELECT * FROM stage_files
+            ON CONFLICT (event_id) DO NOTHING;
+        """;
+
+    private final DataSource dataSource;
+    private final String path;
+
+    public CowrieCopyWriter(DataSource dataSource, String path) {
+        this.dataSource = dataSource;
+        this.path = path;
+    }
+
+    public void write(List<CowrieEvent> batch) throws SQLException {
+        StringBuilder sessions = new StringBuilder(), closes = new StringBuilder(), logins = new StringBuilder(),
+            commands = new StringBuilder(), tcpip = new StringBuilder(), files = new StringBuilder();
+
+        for (CowrieEvent e : batch) {
+            switch (e.eventId()) {
+                case "cowrie.session.connect" -> PgCopyText.row(sessions, e.session(), e.srcIp(), e.timestamp());
+                case "cowrie.session.closed" -> PgCopyText.row(closes, e.session(), e.timestamp());
+                case "cowrie.login.success", "cowrie.login.failed" -> PgCopyText.row(logins, e.dedupKey(), e.session(), e.timestamp(),
+                    e.srcIp(), e.username(), e.password(), e.eventId().equals("cowrie.login.success") ? "t" : "f");
+                case "cowrie.command.input" -> PgCopyText.row(commands, e.dedupKey(), e.session(), e.timestamp(), e.srcIp(), e.input(),
+                    e.input() == null ? null : Long.toString(CommandFingerprint.fingerprint(e.input())));
+                case "cowrie.direct-tcpip.request", "cowrie.direct-tcpip.data" -> PgCopyText.row(tcpip, e.dedupKey(), e.session(),
+                    e.timestamp(), e.srcIp(), e.dstIp(), e.dstPort() == null ? null : e.dstPort().toString(),
+                    e.eventId().substring("cowrie.direct-tcpip.".length()), e.data(), e.ja4h());
+                case "cowrie.session.file_download", "cowrie.session.file_upload" -> PgCopyText.row(files, e.dedupKey(), e.session(),
+                    e.timestamp(), e.srcIp(), e.eventId().substring("cowrie.session.".length()), e.filename(), e.shasum(),
+                    e.duplicate() ? "t" : "f");
+                default -> { }
+            }
+        }
+
+        CowrieEvent last = batch.get(batch.size() - 1);
+
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (Statement st = conn.createStatement()) {
+                    st.execute(STAGING);
+                }
+                CopyManager copy = conn.unwrap(PGConnection.class).getCopyAPI();
+                copy(copy, "stage_sessions", sessions);
+                copy(copy, "stage_closes", closes);
+                copy(copy, "stage_logins", logins);
+                copy(copy, "stage_commands", commands);
+                copy(copy, "stage_tcpip", tcpip);
+                copy(copy, "stage_files", files);
+                try (Statement st = conn.createStatement()) {
+                    st.execute(MERGE);
+                }
+                try (PreparedStatement ps = conn.prepareStatement("""
+                    INSERT INTO cowrie_ingest_offsets (path, file_key, position, updated_at) VALUES (?, ?, ?, now())
+                    ON CONFLICT (path) DO UPDATE SET file_key = EXCLUDED.file_key, position = EXCLUDED.position, updated_at = now()
+                    """)) {
+                    ps.setString(1, path);
+                    ps.setString(2, last.fileKey());
+                    ps.setLong(3, last.offset());
+                    ps.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (java.io.IOException e) {
+            throw new SQLException("COPY feilet", e);
+        }
+    }
+
+    private static void copy(CopyManager copy, String table, StringBuilder rows) throws SQLException, java.io.IOException {
+        if (rows.isEmpty()) return;
+        copy.copyIn("COPY " + table + " FROM STDIN", new StringReader(rows.toString()));
+    }
+}
@@ -0,0 +1,32 @@
+package systemstatus.ingest;
+
+/**
+ * Ett event fra cowrie.json, med bare feltene som lagres. {@code fileKey} og {@code offset} sier hvor i
+ * loggfilen eventet slutter, og lagres som ingest-posisjon når eventet er skrevet.
+ */
+public record CowrieEvent(
+    String eventId,
+    String session,
+    String timestamp,
+    String srcIp,
+    String username,
+    String password,
+    String input,
+    String dstIp,
+    Integer dstPort,
+    String data,
+    String ja4h,
+    String filename,
+    String shasum,
+    boolean duplicate,
+    String fileKey,
+    long offset
+) {
+
+    /**
+     * Stabil nøkkel for deduplisering når samme linje leses flere ganger.
+     */
+    public String dedupKey() {
+        return eventId + "|" + session + "|" + timestamp;
+    }
+}
@@ -0,0 +1,73 @@
+package systemstatus.ingest;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Strømmende parser for én linje i cowrie.json. Leser bare feltene som trengs og hopper over resten
+ * uten å bygge et tre. Returnerer null for eventtyper som ikke lagres.
+ */
+public final class CowrieEventParser {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private CowrieEventParser() {}
+
+    public static CowrieEvent parse(byte[] buf, int off, int len, String fileKey, long offset) throws IOException {
+        String eventId = null, session = null, timestamp = null, srcIp = null, username = null, password = null,
+            input = null, dstIp = null, data = null, ja4h = null, url = null, filename = null, shasum = null;
+        Integer dstPort = null;
+        boolean duplicate = false;
+
+        try (JsonParser p = FACTORY.createParser(buf, off, len)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return null;
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                    p.skipChildren();
+                    continue;
+                }
+                switch (field) {
+                    case "eventid" -> eventId = p.getValueAsString();
+                    case "session" -> session = p.getValueAsString();
+                    case "timestamp" -> timestamp = p.getValueAsString();
+                    case "src_ip" -> srcIp = p.getValueAsString();
+                    case "username" -> username = p.getValueAsString();
+                    case "password" -> password = p.getValueAsString();
+                    case "input" -> input = p.getValueAsString();
+                    case "dst_ip" -> dstIp = p.getValueAsString();
+                    case "dst_port" -> dstPort = p.getValueAsInt();
+                    case "data" -> data = p.getValueAsString();
+                    case "ja4h" -> ja4h = p.getValueAsString();
+                    case "url" -> url = p.getValueAsString();
+                    case "filename" -> filename = p.getValueAsString();
+                    case "shasum" -> shasum = p.getValueAsString();
+                    case "duplicate" -> duplicate = p.getValueAsBoolean();
+                    default -> { }
+                }
+            }
+        }
+
+        if (eventId == null || session == null || timestamp == null || !isStored(eventId)) return null;
+
+        // Nedlastinger har url, opplastinger har filename
+        return new CowrieEvent(eventId, session, timestamp, srcIp, username, password, input,
+            dstIp, dstPort, data, ja4h, filename != null ? filename : url, shasum, duplicate, fileKey, offset);
+    }
+
+    private static boolean isStored(String eventId) {
+        return switch (eventId) {
+            case "cowrie.session.connect", "cowrie.session.closed",
+                 "cowrie.login.success", "cowrie.login.failed",
+                 "cowrie.command.input",
+                 "cowrie.direct-tcpip.request", "cowrie.direct-tcpip.data",
+                 "cowrie.session.file_download", "cowrie.session.file_upload" -> true;
+            default -> false;
+        };
+    }
+}
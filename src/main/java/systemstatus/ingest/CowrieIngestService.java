@@ -0,0 +1,170 @@
+package systemstatus.ingest;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import systemstatus.service.SchemaInitializer;
+
+/**
+ * Leser cowrie.json inn i cowrie-tabellene. En tråd følger loggfilen og fyller en begrenset kø,
+ * en annen tømmer køen i batcher til CowrieCopyWriter. En batch som feiler prøves på nytt til den lykkes,
+ * og posisjonen flyttes bare når batchen er committet (minst én gang, dedup på event_id).
+ */
+@Service
+@Profile("!agent")
+@ConditionalOnProperty(name = "honeypot.ingest.enabled", havingValue = "true")
+public class CowrieIngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(CowrieIngestService.class);
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbc;
+    private final SchemaInitializer schema;
+
+    @Value("${honeypot.ingest.path}")
+    private String path;
+
+    @Value("${honeypot.ingest.batch-size}")
+    private int batchSize;
+
+    @Value("${honeypot.ingest.queue-capacity}")
+    private int queueCapacity;
+
+    @Value("${honeypot.ingest.flush-ms}")
+    private long flushMs;
+
+    @Value("${honeypot.ingest.poll-ms}")
+    private long pollMs;
+
+    private BlockingQueue<CowrieEvent> queue;
+    private CowrieLogTailer tailer;
+    private CowrieCopyWriter writer;
+    private Thread tailerThread;
+    private Thread writerThread;
+    private volatile boolean running = true;
+
+    public CowrieIngestService(DataSource dataSource, JdbcTemplate jdbc, SchemaInitializer schema) {
+        this.dataSource = dataSource;
+        this.jdbc = jdbc;
+        this.schema = schema;
+    }
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        writer = new CowrieCopyWriter(dataSource, path);
+        writerThread = new Thread(this::writeLoop, "cowrie-writer");
+        writerThread.start();
+    }
+
+    // Tailer startes først når skjemaet er på plass og lagret posisjon er lest,
+    // så en database som er nede ved oppstart ikke gir ny lesing fra start
+    private void startTailer() throws InterruptedException {
+        long backoffMs = 500;
+        while (true) {
+            if (!schema.isReady()) {
+                Thread.sleep(1_000);
+                continue;
+            }
+            try {
+                var offsets = jdbc.query("SELECT file_key, position FROM cowrie_ingest_offsets WHERE path = ?",
+                    (rs, i) -> new Object[]{rs.getString(1), rs.getLong(2)}, path);
+                String fileKey = offsets.isEmpty() ? null : (String) offsets.get(0)[0];
+                long position = offsets.isEmpty() ? 0 : (Long) offsets.get(0)[1];
+                tailer = new CowrieLogTailer(Path.of(path), queue, pollMs, fileKey, position);
+                break;
+            } catch (Exception e) {
+                log.warn("kunne ikke lese ingest-posisjon, prøver igjen om {} ms: {}", backoffMs, e.getMessage());
+                Thread.sleep(backoffMs);
+                backoffMs = Math.min(backoffMs * 2, 30_000);
+            }
+        }
+        tailerThread = new Thread(tailer, "cowrie-tailer");
+        tailerThread.start();
+    }
+
+    private void writeLoop() {
+        try {
+            startTailer();
+        } catch (InterruptedException e) {
+            return;
+        }
+
+        List<CowrieEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                CowrieEvent first = queue.poll(flushMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                // Venter litt på flere events så batchene blir store nok til at COPY lønner seg
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) break;
+                    CowrieEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+
+                writeWithRetry(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                if (!batch.isEmpty()) writeOnce(batch);
+                return;
+            }
+        }
+    }
+
+    private void writeWithRetry(List<CowrieEvent> batch) throws InterruptedException {
+        long backoffMs = 500;
+        while (true) {
+            try {
+                writer.write(batch);
+                return;
+            } catch (Exception e) {
+                log.warn("skriving av {} events feilet, prøver igjen om {} ms: {}", batch.size(), backoffMs, e.getMessage());
+                Thread.sleep(backoffMs);
+                backoffMs = Math.min(backoffMs * 2, 30_000);
+            }
+        }
+    }
+
+    private void writeOnce(List<CowrieEvent> batch) {
+        try {
+            writer.write(batch);
+        } catch (Exception e) {
+            log.warn("siste batch ble ikke skrevet, leses på nytt ved neste oppstart: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (tailerThread != null) {
+            tailer.stop();
+            tailerThread.interrupt();
+            tailerThread.join(5_000);
+        }
+        running = false;
+        writerThread.join(10_000);
+        writerThread.interrupt();
+    }
+}
@@ -0,0 +1,206 @@
+package systemstatus.ingest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.stream.Stream;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Følger cowrie.json med en FileChannel og legger parsede events i køen. Blokkerer når køen er full.
+ * Rotasjon oppdages ved at filnøkkelen (inode) endres: den gamle filen leses ferdig før den nye åpnes.
+ * En fil som har krympet regnes som trunkert og leses fra start.
+ * <p>
+ * Er filen rotert mens tjenesten var nede, har cowrie.json en annen nøkkel enn den lagrede. Da letes det
+ * etter den roterte filen (cowrie.json.1 o.l.) med lagret nøkkel, og den leses ferdig fra lagret posisjon
+ * før den nye filen åpnes.
+ */
+public class CowrieLogTailer implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(CowrieLogTailer.class);
+
+    private final Path path;
+    private final BlockingQueue<CowrieEvent> queue;
+    private final long pollMs;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private FileChannel channel;
+    private Path channelPath;
+    private String fileKey;
+    private long position;
+    private volatile boolean running = true;
+
+    public CowrieLogTailer(Path path, BlockingQueue<CowrieEvent> queue, long pollMs, String startFileKey, long startPosition) {
+        this.path = path;
+        this.queue = queue;
+        this.pollMs = pollMs;
+        this.fileKey = startFileKey;
+        this.position = startPosition;
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                if (channel == null && !open()) {
+                    Thread.sleep(pollMs);
+                    continue;
+                }
+                if (readAvailable() == 0) {
+                    if (rotated()) {
+                        // Det som kom inn før rotasjonen er nå lest, så vi kan bytte fil
+                        readAvailable();
+                        close();
+                        fileKey = null;
+                        position = 0;
+                    } else {
+                        Thread.sleep(pollMs);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException e) {
+                log.warn("lesing av {} feilet: {}", path, e.getMessage());
+                close();
+                sleepQuietly();
+            }
+        }
+        close();
+    }
+
+    private boolean open() throws IOException {
+        String currentKey;
+        try {
+            currentKey = fileKey(path);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        channelPath = path;
+        if (fileKey != null && !currentKey.equals(fileKey)) {
+            Path rotated = findRotated(fileKey);
+            if (rotated != null) {
+                channelPath = rotated;
+                currentKey = fileKey;
+            } else {
+                log.warn("fant ikke rotert fil for {} med nøkkel {}, resten av den fra posisjon {} leses ikke",
+                    path, fileKey, position);
+            }
+        }
+        channel = FileChannel.open(channelPath, StandardOpenOption.READ);
+        if (!currentKey.equals(fileKey) || position > channel.size()) {
+            position = 0;
+        }
+        fileKey = currentKey;
+        channel.position(position);
+        buffer.clear();
+        log.info("Leser {} fra posisjon {}", channelPath, position);
+        return true;
+    }
+
+    // Rotert søsken i samme mappe (cowrie.json.1, cowrie.json.2026-10-18, ...) med gitt filnøkkel
+    private Path findRotated(String key) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        String prefix = path.getFileName() + ".";
+        try (Stream<Path> siblings = Files.list(dir)) {
+            for (Path sibling : (Iterable<Path>) siblings::iterator) {
+                if (!sibling.getFileName().toString().startsWith(prefix)) continue;
+                try {
+                    if (key.equals(fileKey(sibling))) return sibling;
+                } catch (NoSuchFileException ignored) {
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean rotated() throws IOException {
+        try {
+            return !fileKey(path).equals(fileKey);
+        } catch (NoSuchFileException e) {
+            return true;
+        }
+    }
+
+    // Leser det som er tilgjengelig og sender hver hele linje videre. Returnerer antall bytes lest.
+    private int readAvailable() throws IOException, InterruptedException {
+        if (channel.size() < position) {
+            log.info("{} er trunkert, leser fra start", channelPath);
+            position = 0;
+            channel.position(0);
+            buffer.clear();
+        }
+
+        int total = 0;
+        int read;
+        while ((read = channel.read(buffer)) > 0) {
+            total += read;
+            buffer.flip();
+            byte[] bytes = buffer.array();
+            int lineStart = buffer.position();
+            for (int i = lineStart; i < buffer.limit(); i++) {
+                if (bytes[i] == '\n') {
+                    position += i + 1 - lineStart;
+                    emit(bytes, lineStart, i - lineStart);
+                    lineStart = i + 1;
+                }
+            }
+            buffer.position(lineStart);
+            buffer.compact();
+
+            // En linje som er lengre enn bufferet får et større buffer
+            if (!buffer.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+        return total;
+    }
+
+    private void emit(byte[] bytes, int off, int len) throws InterruptedException {
+        if (len == 0) return;
+        try {
+            CowrieEvent event = CowrieEventParser.parse(bytes, off, len, fileKey, position);
+            if (event != null) queue.put(event);
+        } catch (IOException e) {
+            log.debug("ugyldig linje ved posisjon {}: {}", position, e.getMessage());
+        }
+    }
+
+    private void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(pollMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    static String fileKey(Path path) throws IOException {
+        Object key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        return String.valueOf(key);
+    }
+}
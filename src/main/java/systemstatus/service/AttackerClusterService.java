@@ -0,0 +1,355 @@
+package systemstatus.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import systemstatus.gto.AttackerClusterGto;
+import systemstatus.gto.SimilarIpGto;
+import systemstatus.util.CommandFingerprint;
+
+/**
+ * Grupperer kilde-IP-er som trolig tilhører samme botnett, ut fra hvilke brukernavn/passord de prøver
+ * og hvilke kommandoer (fingeravtrykk) de kjører. Hver IP får en MinHash-signatur over disse egenskapene,
+ * og signaturene legges i LSH-bøtter (BANDS bånd á ROWS verdier), så IP-er med lik signatur i minst ett
+ * bånd blir kandidater. Signaturene oppdateres inkrementelt fra nye rader.
+ */
+@Service
+@Profile("!agent")
+public class AttackerClusterService {
+
+    private static final int BANDS = 8;
+    private static final int ROWS = 4;
+    private static final int HASHES = BANDS * ROWS;
+
+    // Estimert Jaccard-likhet som kreves for å regnes som lik
+    private static final double THRESHOLD = 0.5;
+    // IP-er med færre ulike egenskaper enn dette gir for tynne signaturer til å klynges; én egenskap
+    // (f.eks. bare root/123456) ville gitt likhet 1.0 med alle andre som bare prøvde den
+    private static final int MIN_FEATURES = 3;
+    private static final int BATCH_SIZE = 50_000;
+    private static final int CLUSTER_SAMPLE = 20;
+
+    private static final Logger log = LoggerFactory.getLogger(AttackerClusterService.class);
+
+    private final JdbcTemplate jdbc;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, IpState> ips = new HashMap<>();
+    private final Map<Long, Set<String>> buckets = new HashMap<>();
+    private long lastLoginId = 0;
+    private long lastCommandId = 0;
+    private boolean dirty = false;
+
+    private volatile List<AttackerClusterGto> clusters = List.of();
+
+    // Signatur som nøkkel i HashMap, sammenlignet på innhold
+    private record Signature(int[] values) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Signature other && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(values);
+        }
+    }
+
+    private static final class IpState {
+        final int[] signature = new int[HASHES];
+        // De første ulike egenskapene, bare til MIN_FEATURES er nådd
+        final long[] seen = new long[MIN_FEATURES];
+        int distinct;
+        // Båndnøklene IP-en ligger i nå, så den kan flyttes når signaturen endres
+        long[] bandKeys;
+
+        IpState() {
+            Arrays.fill(signature, Integer.MAX_VALUE);
+        }
+    }
+
+    private static final long[] SEEDS = new long[HASHES];
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < HASHES; i++) {
+            seed = mix(seed + i);
+            SEEDS[i] = seed;
+        }
+    }
+
+    public AttackerClusterService(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @Scheduled(fixedDelayString = "${honeypot.clusters.refresh-ms}")
+    public void refresh() {
+        try {
+            int read;
+            do {
+                read = indexLogins();
+            } while (read == BATCH_SIZE);
+            do {
+                read = indexCommands();
+            } while (read == BATCH_SIZE);
+            if (dirty) rebuildClusters();
+        } catch (Exception e) {
+            log.warn("oppdatering av klynger feilet: {}", e.getMessage());
+        }
+    }
+
+    public List<AttackerClusterGto> getClusters(int limit) {
+        List<AttackerClusterGto> current = clusters;
+        return current.subList(0, Math.min(limit, current.size()));
+    }
+
+    public List<SimilarIpGto> getSimilarIps(String ip, int limit) {
+        lock.readLock().lock();
+        try {
+            IpState state = ips.get(ip);
+            if (state == null || state.bandKeys == null) return List.of();
+
+            Set<String> candidates = new HashSet<>();
+            for (long key : state.bandKeys) {
+                Set<String> bucket = buckets.get(key);
+                if (bucket != null) candidates.addAll(bucket);
+            }
+            candidates.remove(ip);
+
+            List<SimilarIpGto> similar = new ArrayList<>();
+            for (String candidate : candidates) {
+                double similarity = similarity(state.signature, ips.get(candidate).signature);
+                if (similarity >= THRESHOLD) similar.add(new SimilarIpGto(candidate, similarity));
+            }
+            similar.sort(Comparator.comparingDouble(SimilarIpGto::similarity).reversed());
+            return similar.subList(0, Math.min(limit, similar.size()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int indexLogins() {
+        List<Object[]> rows = jdbc.query(
+            "SELECT id, src_ip, username, password FROM cowrie_logins WHERE id > ? ORDER BY id LIMIT ?",
+            (rs, i) -> new Object[]{rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4)},
+            lastLoginId, BATCH_SIZE);
+        if (rows.isEmpty()) return 0;
+
+        Map<String, long[]> changed = new HashMap<>();
+        lock.writeLock().lock();
+        try {
+            for (Object[] row : rows) {
+                if (row[1] != null) {
+                    long feature = hashString("c:" + row[2] + "\0" + row[3]);
+                    add((String) row[1], feature, changed);
+                }
+                lastLoginId = (Long) row[0];
+            }
+            rebucket(changed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return rows.size();
+    }
+
+    private int indexCommands() {
+        List<Object[]> rows = jdbc.query(
+            "SELECT id, src_ip, input FROM cowrie_commands WHERE id > ? ORDER BY id LIMIT ?",
+            (rs, i) -> new Object[]{rs.getLong(1), rs.getString(2), rs.getString(3)},
+            lastCommandId, BATCH_SIZE);
+        if (rows.isEmpty()) return 0;
+
+        Map<String, long[]> changed = new HashMap<>();
+        lock.writeLock().lock();
+        try {
+            for (Object[] row : rows) {
+                if (row[1] != null && row[2] != null) {
+                    long feature = mix(CommandFingerprint.fingerprint((String) row[2]) ^ 0x6D6DL);
+                    add((String) row[1], feature, changed);
+                }
+                lastCommandId = (Long) row[0];
+            }
+            rebucket(changed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return rows.size();
+    }
+
+    // MinHash er inkrementell: en ny egenskap kan bare senke verdiene i signaturen
+    private void add(String ip, long feature, Map<String, long[]> changed) {
+        IpState state = ips.computeIfAbsent(ip, k -> new IpState());
+        boolean reachedMin = false;
+        if (state.distinct < MIN_FEATURES && !contains(state.seen, state.distinct, feature)) {
+            state.seen[state.distinct++] = feature;
+            reachedMin = state.distinct == MIN_FEATURES;
+        }
+        boolean modified = false;
+        for (int i = 0; i < HASHES; i++) {
+            int h = (int) mix(feature ^ SEEDS[i]);
+            if (h < state.signature[i]) {
+                state.signature[i] = h;
+                modified = true;
+            }
+        }
+        if (modified || reachedMin) changed.putIfAbsent(ip, state.bandKeys);
+    }
+
+    private static boolean contains(long[] values, int count, long value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+
+    private void rebucket(Map<String, long[]> changed) {
+        for (var entry : changed.entrySet()) {
+            String ip = entry.getKey();
+            IpState state = ips.get(ip);
+            if (entry.getValue() != null) {
+                for (long key : entry.getValue()) {
+                    Set<String> bucket = buckets.get(key);
+                    if (bucket != null && bucket.remove(ip) && bucket.isEmpty()) buckets.remove(key);
+                }
+            }
+            if (state.distinct < MIN_FEATURES) {
+                state.bandKeys = null;
+                continue;
+            }
+            state.bandKeys = bandKeys(state.signature);
+            for (long key : state.bandKeys) {
+                buckets.computeIfAbsent(key, k -> new HashSet<>()).add(ip);
+            }
+        }
+        if (!changed.isEmpty()) dirty = true;
+    }
+
+    // Union-find over bøttene, der bare par over terskelen slås sammen. IP-er med nøyaktig lik signatur
+    // (typisk et botnett som kjører samme liste) slås først sammen med én representant i O(N); i bøttene
+    // sammenlignes så bare de ulike signaturene, så tusen like IP-er koster like lite som én
+    private void rebuildClusters() {
+        Map<String, String> parent = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            Map<Signature, String> bySignature = new HashMap<>();
+            Map<String, String> representative = new HashMap<>();
+            for (var entry : ips.entrySet()) {
+                if (entry.getValue().bandKeys == null) continue;
+                String ip = entry.getKey();
+                String rep = bySignature.computeIfAbsent(new Signature(entry.getValue().signature), k -> ip);
+                representative.put(ip, rep);
+                if (!rep.equals(ip)) union(parent, rep, ip);
+            }
+
+            for (Set<String> bucket : buckets.values()) {
+                if (bucket.size() < 2) continue;
+                Set<String> distinct = new HashSet<>();
+                for (String ip : bucket) distinct.add(representative.get(ip));
+                if (distinct.size() < 2) continue;
+
+                // Alle par av ulike signaturer sammenlignes, så resultatet ikke avhenger av rekkefølgen
+                List<String> members = new ArrayList<>(distinct);
+                for (int i = 0; i < members.size(); i++) {
+                    String a = members.get(i);
+                    int[] sa = ips.get(a).signature;
+                    for (int j = i + 1; j < members.size(); j++) {
+                        String b = members.get(j);
+                        if (similarity(sa, ips.get(b).signature) >= THRESHOLD) union(parent, a, b);
+                    }
+                }
+            }
+            dirty = false;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Map<String, List<String>> groups = new HashMap<>();
+        for (String ip : parent.keySet()) {
+            groups.computeIfAbsent(find(parent, ip), k -> new ArrayList<>()).add(ip);
+        }
+
+        List<AttackerClusterGto> result = new ArrayList<>();
+        for (List<String> members : groups.values()) {
+            if (members.size() < 2) continue;
+            members.sort(Comparator.naturalOrder());
+            result.add(new AttackerClusterGto(members.get(0), members.size(),
+                List.copyOf(members.subList(0, Math.min(CLUSTER_SAMPLE, members.size())))));
+        }
+        result.sort(Comparator.comparingInt(AttackerClusterGto::size).reversed());
+        clusters = List.copyOf(result);
+    }
+
+    private static String find(Map<String, String> parent, String ip) {
+        String root = ip;
+        while (true) {
+            String p = parent.getOrDefault(root, root);
+            if (p.equals(root)) break;
+            root = p;
+        }
+        // Stikomprimering
+        String node = ip;
+        while (!node.equals(root)) {
+            String next = parent.get(node);
+            parent.put(node, root);
+            node = next;
+        }
+        return root;
+    }
+
+    private static void union(Map<String, String> parent, String a, String b) {
+        parent.putIfAbsent(a, a);
+        parent.putIfAbsent(b, b);
+        String ra = find(parent, a), rb = find(parent, b);
+        if (!ra.equals(rb)) parent.put(rb, ra);
+    }
+
+    private static long[] bandKeys(int[] signature) {
+        long[] keys = new long[BANDS];
+        for (int b = 0; b < BANDS; b++) {
+            long h = b;
+            for (int r = 0; r < ROWS; r++) {
+                h = mix(h * 31 + signature[b * ROWS + r]);
+            }
+            keys[b] = h;
+        }
+        return keys;
+    }
+
+    private static double similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (a[i] == b[i]) equal++;
+        }
+        return (double) equal / HASHES;
+    }
+
+    private static long hashString(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    // SplitMix64-finalisering
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
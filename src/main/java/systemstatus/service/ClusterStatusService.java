@@ -1,11 +1,16 @@
 package systemstatus.service;
 
+import java.net.InetAddress;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,31 +25,50 @@ import systemstatus.gto.*;
 public class ClusterStatusService {
 
     private final SystemStatusService service;
+    private final HeartbeatListener heartbeats;
 
     private static final Logger log = LoggerFactory.getLogger(ClusterStatusService.class);
-    private final HttpClient client = HttpClient.newHttpClient();
+    private final HttpClient client;
     private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new com.fasterxml.jackson.datatype.jsr310.JavaTimeModule());
     @Value("${cluster.nodes}")
     private List<String> nodeList;
 
-    public ClusterStatusService(SystemStatusService service){
+    @Value("${cluster.mode}")
+    private String mode;
+
+    @Value("${cluster.heartbeat.interval-ms}")
+    private long heartbeatIntervalMs;
+
+    // En node som henger skal ikke holde /cluster/status (og plassen i klynge-bulkheaden) lenger enn dette
+    private final Duration requestTimeout;
+
+    // Siste kjente status per node, som deltaene fra /status?since= flettes inn i
+    private final Map<String, CachedStatus> cache = new ConcurrentHashMap<>();
+
+    private record CachedStatus(String instance, long version, SystemStatusGto status) {}
+
+    public ClusterStatusService(SystemStatusService service, HeartbeatListener heartbeats,
+                                @Value("${cluster.request-timeout-ms}") long requestTimeoutMs){
         this.service = service;
+        this.heartbeats = heartbeats;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.client = HttpClient.newBuilder().connectTimeout(requestTimeout).build();
     }
     public ClusterStatusGto clusterStatus(){
         List<NodeStatusGto> nodes = new ArrayList<>();
 
         try{
             SystemStatusGto local = service.getStatus();
-            nodes.add(new NodeStatusGto("http://192.168.50.5", local, true));
+            nodes.add(new NodeStatusGto("http://192.168.50.5", local, true, containerCount(local)));
         }catch(Exception e){
-            nodes.add(new NodeStatusGto("http://192.168.50.5", null, false));
+            nodes.add(new NodeStatusGto("http://192.168.50.5", null, false, null));
             log.error(e.getMessage());
         }
         for(String node : nodeList){
             try{
-                nodes.add(nodeStatus(node));
+                nodes.add("push".equals(mode) ? heartbeatStatus(node) : nodeStatus(node));
             }catch(Exception e){
-                nodes.add(new NodeStatusGto(node, null, false));
+                nodes.add(new NodeStatusGto(node, null, false, null));
                 log.error(e.getMessage());
             }
         }
@@ -52,9 +76,27 @@ public class ClusterStatusService {
     }
     
     private NodeStatusGto nodeStatus(String node) throws Exception{
+        CachedStatus cached = cache.get(node);
+        StatusDeltaGto delta = fetchDelta(node, cached == null ? 0 : cached.version());
+
+        // Ny prosess på noden (omstart) eller versjon som går bakover: deltaet er relativt til noe vi ikke har,
+        // så cachen forkastes og hele statusen hentes på nytt
+        if (cached != null && (!Objects.equals(cached.instance(), delta.instance()) || delta.version() < cached.version())){
+            cache.remove(node);
+            cached = null;
+            delta = fetchDelta(node, 0);
+        }
+
+        SystemStatusGto systemStatus = merge(cached, delta);
+        cache.put(node, new CachedStatus(delta.instance(), delta.version(), systemStatus));
+        return new NodeStatusGto(node, systemStatus, true, containerCount(systemStatus));
+    }
+
+    private StatusDeltaGto fetchDelta(String node, long since) throws Exception{
         HttpRequest req = HttpRequest.newBuilder()
-                .uri(URI.create(node + "/status"))
+                .uri(URI.create(node + "/status?since=" + since))
                 .header("Accept", "application/json")
+                .timeout(requestTimeout)
                 .GET()
                 .build(); 
         HttpResponse<String> res = client.send(req, HttpResponse.BodyHandlers.ofString());
@@ -62,7 +104,48 @@ public class ClusterStatusService {
         if (res.statusCode() != 200) {
             throw new RuntimeException("feilet: " + res.statusCode() + res.body() + "\n");
         }
-        SystemStatusGto systemStatus = objectMapper.readValue(res.body(), SystemStatusGto.class);
-        return new NodeStatusGto(node, systemStatus, true);
+        return objectMapper.readValue(res.body(), StatusDeltaGto.class);
+    }
+
+    // Push-modus: bygger status fra siste heartbeat, og noden regnes som nede etter tre tapte heartbeats
+    private NodeStatusGto heartbeatStatus(String node) throws Exception{
+        String host = InetAddress.getByName(URI.create(node).getHost()).getHostAddress();
+        HeartbeatListener.Received received = heartbeats.latest(host);
+        if (received == null || System.currentTimeMillis() - received.receivedAtMs() > 3 * heartbeatIntervalMs){
+            return new NodeStatusGto(node, null, false, null);
+        }
+
+        var hb = received.heartbeat();
+        SystemStatusGto systemStatus = new SystemStatusGto(
+            new CpuStatusGto(hb.cpuTempC(), hb.user(), hb.system(), hb.idle(), hb.throttled()),
+            null,
+            new MemoryStatusGto(hb.memTotalMb(), hb.memUsedMb(), 0, 0),
+            List.of(new DiskStatusGto("total", hb.diskTotalGb(), hb.diskUsedGb(),
+                hb.diskTotalGb() > 0 ? (int) (hb.diskUsedGb() * 100 / hb.diskTotalGb()) : 0)),
+            new KernelStatusGto(null, null, hb.hostName()),
+            null,
+            null,
+            null);
+        return new NodeStatusGto(node, systemStatus, true, hb.containers() >= 0 ? hb.containers() : null);
+    }
+
+    private static Integer containerCount(SystemStatusGto status){
+        return status.dockers() != null ? status.dockers().size() : null;
+    }
+
+    // Noder uten versjonering svarer med full status og version = 0, som da erstatter hele cachen
+    private static SystemStatusGto merge(CachedStatus cached, StatusDeltaGto delta){
+        SystemStatusGto old = cached == null || delta.version() == 0
+            ? new SystemStatusGto(null, null, null, null, null, null, null, null)
+            : cached.status();
+        return new SystemStatusGto(
+            delta.cpu() != null ? delta.cpu() : old.cpu(),
+            delta.nvme() != null ? delta.nvme() : old.nvme(),
+            delta.memory() != null ? delta.memory() : old.memory(),
+            delta.disks() != null ? delta.disks() : old.disks(),
+            delta.kernel() != null ? delta.kernel() : old.kernel(),
+            delta.dockers() != null ? delta.dockers() : old.dockers(),
+            delta.diskIo() != null ? delta.diskIo() : old.diskIo(),
+            delta.network() != null ? delta.network() : old.network());
     }
 }
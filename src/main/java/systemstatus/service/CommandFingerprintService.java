@@ -0,0 +1,78 @@
+package systemstatus.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import systemstatus.util.CommandFingerprint;
+
+/**
+ * Fyller cowrie_commands.fingerprint for rader som mangler det. Første kjøring tar hele historikken,
+ * deretter bare nye rader. Til den første kjøringen er ferdig grupperer HoneypotService på rå input.
+ */
+@Service
+@Profile("!agent")
+public class CommandFingerprintService {
+
+    private static final int BATCH_SIZE = 5_000;
+
+    private static final Logger log = LoggerFactory.getLogger(CommandFingerprintService.class);
+
+    private final JdbcTemplate jdbc;
+    private final SchemaInitializer schema;
+
+    private volatile boolean backfilled = false;
+
+    public CommandFingerprintService(JdbcTemplate jdbc, SchemaInitializer schema) {
+        this.jdbc = jdbc;
+        this.schema = schema;
+    }
+
+    /** true når alle rader som fantes ved første kjøring har fått fingerprint. */
+    public boolean isBackfilled() {
+        return backfilled;
+    }
+
+    @Scheduled(fixedDelayString = "${honeypot.fingerprint.refresh-ms}")
+    public void fingerprintNewCommands() {
+        // fingerprint-kolonnen finnes ikke før schema.sql er kjørt
+        if (!schema.isReady()) return;
+        try {
+            int updated, total = 0;
+            do {
+                updated = fingerprintBatch();
+                total += updated;
+            } while (updated == BATCH_SIZE);
+            if (!backfilled) log.info("fingerprint-backfill ferdig");
+            backfilled = true;
+            if (total > 0) log.debug("fingerprint satt på {} kommandoer", total);
+        } catch (Exception e) {
+            log.warn("fingerprint av kommandoer feilet: {}", e.getMessage());
+        }
+    }
+
+    private int fingerprintBatch() {
+        List<Object[]> updates = new ArrayList<>();
+        jdbc.query("""
+            SELECT id, input FROM cowrie_commands
+            WHERE fingerprint IS NULL
+            ORDER BY id
+            LIMIT ?
+            """,
+            rs -> {
+                String input = rs.getString(2);
+                updates.add(new Object[]{CommandFingerprint.fingerprint(input == null ? "" : input), rs.getLong(1)});
+            }, BATCH_SIZE);
+
+        if (!updates.isEmpty()) {
+            jdbc.batchUpdate("UPDATE cowrie_commands SET fingerprint = ? WHERE id = ?", updates);
+        }
+        return updates.size();
+    }
+}
@@ -0,0 +1,160 @@
+package systemstatus.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import systemstatus.gto.ContainerUsageGto;
+
+/**
+ * Leser CPU-, minne- og I/O-forbruk per container direkte fra cgroup v2, i stedet for å kjøre docker stats.
+ * Med systemd som cgroup-driver ligger containerne i /sys/fs/cgroup/system.slice/docker-&lt;id&gt;.scope,
+ * med cgroupfs-driveren i /sys/fs/cgroup/docker/&lt;id&gt;. Begge leses.
+ */
+@Service
+@Lazy(false)
+public class ContainerUsageSampler {
+
+    private static final Path CGROUP_ROOT = Path.of("/sys/fs/cgroup");
+    private static final String SCOPE_PREFIX = "docker-";
+    private static final String SCOPE_SUFFIX = ".scope";
+
+    private static final Logger log = LoggerFactory.getLogger(ContainerUsageSampler.class);
+
+    private record Sample(long cpuUsageUsec, long ioReadBytes, long ioWriteBytes, long nanos) {}
+
+    private final Path systemSlice;
+    private final Path dockerGroup;
+
+    private Map<String, Sample> previous = Map.of();
+    // Containere som feilet ved forrige måling, så feilen logges én gang og ikke hvert intervall
+    private final Set<String> failing = new HashSet<>();
+    // Full container-id -> siste forbruk
+    private volatile Map<String, ContainerUsageGto> latest = Map.of();
+
+    public ContainerUsageSampler() {
+        this(CGROUP_ROOT);
+    }
+
+    ContainerUsageSampler(Path cgroupRoot) {
+        this.systemSlice = cgroupRoot.resolve("system.slice");
+        this.dockerGroup = cgroupRoot.resolve("docker");
+    }
+
+    /**
+     * Forbruk for en container, slått opp på full eller forkortet id (som i docker ps).
+     */
+    public ContainerUsageGto usageFor(String id) {
+        for (var entry : latest.entrySet()) {
+            if (entry.getKey().startsWith(id)) return entry.getValue();
+        }
+        return null;
+    }
+
+    @Scheduled(fixedDelayString = "${system.sampler.interval-ms}")
+    public void sample() {
+        Map<String, Path> containers = new HashMap<>();
+        try {
+            if (Files.isDirectory(systemSlice)) {
+                try (DirectoryStream<Path> scopes = Files.newDirectoryStream(systemSlice, SCOPE_PREFIX + "*" + SCOPE_SUFFIX)) {
+                    for (Path scope : scopes) {
+                        String name = scope.getFileName().toString();
+                        containers.put(name.substring(SCOPE_PREFIX.length(), name.length() - SCOPE_SUFFIX.length()), scope);
+                    }
+                }
+            }
+            if (Files.isDirectory(dockerGroup)) {
+                try (DirectoryStream<Path> groups = Files.newDirectoryStream(dockerGroup, Files::isDirectory)) {
+                    for (Path group : groups) {
+                        containers.put(group.getFileName().toString(), group);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("sample() av cgroups feilet: {}", e.getMessage());
+            return;
+        }
+
+        Map<String, Sample> current = new HashMap<>();
+        Map<String, ContainerUsageGto> usage = new HashMap<>();
+
+        // Feil i én container hopper bare over den, resten får fortsatt ferske verdier
+        for (var entry : containers.entrySet()) {
+            String id = entry.getKey();
+            Path group = entry.getValue();
+            try {
+                long[] io = readIoStat(group.resolve("io.stat"));
+                Sample sample = new Sample(readCpuUsageUsec(group.resolve("cpu.stat")), io[0], io[1], System.nanoTime());
+                ContainerUsageGto gto = toGto(previous.get(id), sample,
+                    readLong(group.resolve("memory.current")), readMemoryMax(group.resolve("memory.max")));
+                current.put(id, sample);
+                usage.put(id, gto);
+                failing.remove(id);
+            } catch (NoSuchFileException e) {
+                // Containeren stoppet mens vi leste
+            } catch (IOException | RuntimeException e) {
+                if (failing.add(id)) log.warn("cgroup for container {} kunne ikke leses: {}", id, e.getMessage());
+            }
+        }
+        failing.retainAll(containers.keySet());
+
+        previous = current;
+        latest = Map.copyOf(usage);
+    }
+
+    private static ContainerUsageGto toGto(Sample prev, Sample cur, long memoryBytes, Long memoryMax) {
+        double cpuPercent = 0, readKBps = 0, writeKBps = 0;
+        if (prev != null) {
+            double seconds = (cur.nanos() - prev.nanos()) / 1e9;
+            if (seconds > 0) {
+                cpuPercent = (cur.cpuUsageUsec() - prev.cpuUsageUsec()) / (seconds * 1e6) * 100;
+                readKBps = (cur.ioReadBytes() - prev.ioReadBytes()) / 1024.0 / seconds;
+                writeKBps = (cur.ioWriteBytes() - prev.ioWriteBytes()) / 1024.0 / seconds;
+            }
+        }
+        return new ContainerUsageGto(cpuPercent, memoryBytes, memoryMax, cur.ioReadBytes(), cur.ioWriteBytes(), readKBps, writeKBps);
+    }
+
+    private static long readCpuUsageUsec(Path path) throws IOException {
+        for (String line : Files.readAllLines(path)) {
+            if (line.startsWith("usage_usec ")) {
+                return Long.parseLong(line.substring("usage_usec ".length()).trim());
+            }
+        }
+        return 0;
+    }
+
+    // Summerer rbytes/wbytes over alle enheter i io.stat
+    private static long[] readIoStat(Path path) throws IOException {
+        long read = 0, written = 0;
+        for (String line : Files.readAllLines(path)) {
+            for (String field : line.split("\\s+")) {
+                if (field.startsWith("rbytes=")) read += Long.parseLong(field.substring("rbytes=".length()));
+                else if (field.startsWith("wbytes=")) written += Long.parseLong(field.substring("wbytes=".length()));
+            }
+        }
+        return new long[]{read, written};
+    }
+
+    private static long readLong(Path path) throws IOException {
+        return Long.parseLong(Files.readString(path).trim());
+    }
+
+    // "max" betyr ingen grense
+    private static Long readMemoryMax(Path path) throws IOException {
+        String value = Files.readString(path).trim();
+        return value.equals("max") ? null : Long.parseLong(value);
+    }
+}
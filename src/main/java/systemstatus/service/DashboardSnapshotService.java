@@ -0,0 +1,155 @@
+package systemstatus.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import systemstatus.gto.*;
+
+/**
+ * Bygger dashboardet i bakgrunnen i stedet for per forespørsel. Seksjonene oppdateres i tre takter
+ * (raske: oppsummering og siste hendelser, middels: topplister, aktivitet og geo, trege: malware og
+ * destinasjoner), og når en seksjon har endret seg serialiseres et nytt øyeblikksbilde til JSON, både rått og gzippet.
+ * Å svare på /honeypot/dashboard er da bare å skrive ut ferdige bytes, uansett antall seere.
+ */
+@Service
+@Profile("!agent")
+public class DashboardSnapshotService {
+
+    // Gzip-versjonen er en egen representasjon med andre bytes, så den har sin egen sterke ETag
+    public record Snapshot(String etag, String gzipEtag, byte[] json, byte[] gzip) {}
+
+    private static final Logger log = LoggerFactory.getLogger(DashboardSnapshotService.class);
+
+    private final HoneypotService service;
+    private final ObjectMapper objectMapper;
+
+    private volatile HoneypotSummaryGto summary;
+    private volatile List<ActiveSessionGto> activeSessions;
+    private volatile List<LoginAttemptGto> recentLogins;
+    private volatile List<CommandGto> recentCommands;
+    private volatile List<SourceIpGto> topIps;
+    private volatile List<CredentialGto> topCredentials;
+    private volatile List<TopCommandGto> topCommands;
+    private volatile List<ActivityGto> activity;
+    private volatile List<SourceIpGto> geo;
+    private volatile List<TcpipEventGto> recentTcpip;
+    private volatile List<FileTransferGto> recentFiles;
+    private volatile List<MalwareGto> malware;
+    private volatile List<DestinationGto> destinations;
+
+    // Når innholdet i hver seksjon sist endret seg, med samme navn som feltene i HoneypotDashboardGto.
+    // Uendrede seksjoner beholder tidspunktet, så bytes og ETag står stille til noe faktisk er nytt.
+    private final Map<String, String> updatedAt = new TreeMap<>();
+    private final Map<String, Object> lastValues = new HashMap<>();
+    private volatile Snapshot snapshot;
+
+    public DashboardSnapshotService(HoneypotService service, ObjectMapper objectMapper) {
+        this.service = service;
+        this.objectMapper = objectMapper;
+    }
+
+    /** Siste ferdige øyeblikksbilde, eller null før første oppdatering er gjort. */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Scheduled(fixedDelayString = "${honeypot.dashboard.fast-ms}")
+    public void refreshFast() {
+        boolean changed = false;
+        changed |= refresh("summary", service::getSummary, v -> summary = v);
+        changed |= refresh("activeSessions", service::getActiveSessions, v -> activeSessions = v);
+        changed |= refresh("recentLogins", () -> service.getRecentLogins(20), v -> recentLogins = v);
+        changed |= refresh("recentCommands", () -> service.getRecentCommands(20), v -> recentCommands = v);
+        changed |= refresh("recentTcpip", () -> service.getRecentTcpip(20), v -> recentTcpip = v);
+        changed |= refresh("recentFiles", () -> service.getRecentFileTransfers(20), v -> recentFiles = v);
+        if (changed) publish();
+    }
+
+    @Scheduled(fixedDelayString = "${honeypot.dashboard.medium-ms}")
+    public void refreshMedium() {
+        boolean changed = false;
+        changed |= refresh("topIps", () -> service.getTopIps(20), v -> topIps = v);
+        changed |= refresh("topCredentials", () -> service.getTopCredentials(20), v -> topCredentials = v);
+        changed |= refresh("topCommands", () -> service.getTopCommands(20), v -> topCommands = v);
+        changed |= refresh("activity", () -> service.getHourlyActivity(48), v -> activity = v);
+        changed |= refresh("geo", service::getGeoData, v -> geo = v);
+        if (changed) publish();
+    }
+
+    @Scheduled(fixedDelayString = "${honeypot.dashboard.slow-ms}")
+    public void refreshSlow() {
+        boolean changed = false;
+        changed |= refresh("malware", service::getMalware, v -> malware = v);
+        changed |= refresh("destinations", service::getDestinations, v -> destinations = v);
+        if (changed) publish();
+    }
+
+    // En seksjon som feiler beholder forrige verdi og tidspunkt; gto-ene er records, så equals sammenligner innholdet
+    private <T> boolean refresh(String section, Supplier<T> loader, Consumer<T> store) {
+        try {
+            T value = loader.get();
+            synchronized (this) {
+                if (lastValues.containsKey(section) && Objects.equals(lastValues.get(section), value)) return false;
+                lastValues.put(section, value);
+                store.accept(value);
+                updatedAt.put(section, Instant.now().toString());
+            }
+            return true;
+        } catch (Exception e) {
+            log.warn("oppdatering av dashboard-seksjonen {} feilet: {}", section, e.getMessage());
+            return false;
+        }
+    }
+
+    private synchronized void publish() {
+        HoneypotDashboardGto dashboard = new HoneypotDashboardGto(summary, activeSessions, recentLogins, recentCommands,
+            topIps, topCredentials, topCommands, activity, geo, recentTcpip, recentFiles, malware, destinations,
+            Collections.unmodifiableMap(new TreeMap<>(updatedAt)));
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(dashboard);
+            String hash = hash(json);
+            snapshot = new Snapshot("\"" + hash + "\"", "\"" + hash + "-gz\"", json, gzip(json));
+        } catch (IOException e) {
+            log.warn("serialisering av dashboard feilet: {}", e.getMessage());
+        }
+    }
+
+    // ETag fra innholdet, så samme bytes alltid gir samme tag (også etter omstart)
+    private static String hash(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return HexFormat.of().formatHex(digest, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+}
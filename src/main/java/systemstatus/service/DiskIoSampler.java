@@ -0,0 +1,151 @@
+package systemstatus.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import systemstatus.gto.DiskIoGto;
+
+/**
+ * Leser /proc/diskstats med fast intervall og regner ut IOPS, gjennomstrømning, snittlatens
+ * og utnyttelse per enhet fra differansen mellom to målinger.
+ */
+@Service
+@Lazy(false)
+public class DiskIoSampler {
+
+    private static final Path DISKSTATS_PATH = Path.of("/proc/diskstats");
+    private static final Path MOUNTINFO_PATH = Path.of("/proc/self/mountinfo");
+
+    // Kolonner i /proc/diskstats
+    private static final int MAJOR_INDEX = 0;
+    private static final int MINOR_INDEX = 1;
+    private static final int NAME_INDEX = 2;
+    private static final int READS_INDEX = 3;
+    private static final int SECTORS_READ_INDEX = 5;
+    private static final int MS_READING_INDEX = 6;
+    private static final int WRITES_INDEX = 7;
+    private static final int SECTORS_WRITTEN_INDEX = 9;
+    private static final int MS_WRITING_INDEX = 10;
+    private static final int MS_IO_INDEX = 12;
+    private static final int WEIGHTED_MS_INDEX = 13;
+
+    private static final Logger log = LoggerFactory.getLogger(DiskIoSampler.class);
+
+    // deviceId er "major:minor", samme nøkkel som i /proc/self/mountinfo
+    record Sample(String deviceId, long reads, long sectorsRead, long msReading, long writes, long sectorsWritten,
+                          long msWriting, long msIo, long weightedMs) {}
+
+    private Map<String, Sample> previous = Map.of();
+    private long previousNanos;
+    private volatile List<DiskIoGto> latest = List.of();
+
+    public List<DiskIoGto> getLatest() {
+        return latest;
+    }
+
+    @Scheduled(fixedDelayString = "${system.sampler.interval-ms}")
+    public void sample() {
+        try {
+            long now = System.nanoTime();
+            Map<String, Sample> current = parseDiskstats(Files.readAllLines(DISKSTATS_PATH));
+
+            if (!previous.isEmpty()) {
+                double seconds = (now - previousNanos) / 1e9;
+                Map<String, String> mounts = parseMountinfo(Files.readAllLines(MOUNTINFO_PATH));
+                List<DiskIoGto> disks = new ArrayList<>();
+
+                for (var entry : current.entrySet()) {
+                    Sample prev = previous.get(entry.getKey());
+                    if (prev == null) continue;
+                    disks.add(toGto(entry.getKey(), mounts.get(entry.getValue().deviceId()), prev, entry.getValue(), seconds));
+                }
+                disks.sort((a, b) -> a.device().compareTo(b.device()));
+                latest = List.copyOf(disks);
+            }
+            previous = current;
+            previousNanos = now;
+        } catch (IOException | RuntimeException e) {
+            log.warn("sample() av diskstats feilet: {}", e.getMessage());
+        }
+    }
+
+    private static DiskIoGto toGto(String device, String mountPoint, Sample prev, Sample cur, double seconds) {
+        long reads = cur.reads() - prev.reads();
+        long writes = cur.writes() - prev.writes();
+        double elapsedMs = seconds * 1000;
+
+        return new DiskIoGto(device, mountPoint,
+            reads / seconds,
+            writes / seconds,
+            (cur.sectorsRead() - prev.sectorsRead()) * 512 / 1024.0 / seconds,
+            (cur.sectorsWritten() - prev.sectorsWritten()) * 512 / 1024.0 / seconds,
+            reads > 0 ? (double) (cur.msReading() - prev.msReading()) / reads : 0,
+            writes > 0 ? (double) (cur.msWriting() - prev.msWriting()) / writes : 0,
+            Math.min(100, (cur.msIo() - prev.msIo()) * 100 / elapsedMs),
+            (cur.weightedMs() - prev.weightedMs()) / elapsedMs);
+    }
+
+    static Map<String, Sample> parseDiskstats(List<String> lines) {
+        Map<String, Sample> samples = new HashMap<>();
+        for (String line : lines) {
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length <= WEIGHTED_MS_INDEX) continue;
+
+            String name = parts[NAME_INDEX];
+            if (name.startsWith("loop") || name.startsWith("ram") || name.startsWith("zram")) continue;
+
+            samples.put(name, new Sample(
+                parts[MAJOR_INDEX] + ":" + parts[MINOR_INDEX],
+                Long.parseLong(parts[READS_INDEX]),
+                Long.parseLong(parts[SECTORS_READ_INDEX]),
+                Long.parseLong(parts[MS_READING_INDEX]),
+                Long.parseLong(parts[WRITES_INDEX]),
+                Long.parseLong(parts[SECTORS_WRITTEN_INDEX]),
+                Long.parseLong(parts[MS_WRITING_INDEX]),
+                Long.parseLong(parts[MS_IO_INDEX]),
+                Long.parseLong(parts[WEIGHTED_MS_INDEX])));
+        }
+        return samples;
+    }
+
+    // "major:minor" -> monteringspunkt(er), kommaseparert. Enhetsnavnet i mountinfo kan ikke brukes: rotfilsystemet
+    // står som /dev/root på Raspberry Pi OS og LVM som /dev/mapper/*, mens diskstats bruker mmcblk0p2 og dm-0.
+    // Bind-mounts (rot ulik "/") hoppes over, ellers får én enhet med seg alle Docker-volumene sine.
+    static Map<String, String> parseMountinfo(List<String> lines) {
+        Map<String, String> mounts = new HashMap<>();
+        for (String line : lines) {
+            String[] parts = line.split(" ");
+            if (parts.length < 5 || !parts[3].equals("/")) continue;
+            String mountPoint = unescape(parts[4]);
+            mounts.merge(parts[2], mountPoint, (a, b) -> a + "," + b);
+        }
+        return mounts;
+    }
+
+    // mountinfo skriver mellomrom, tab, linjeskift og bakstrek som oktale escapes (\040 osv.)
+    private static String unescape(String field) {
+        if (field.indexOf('\\') < 0) return field;
+        StringBuilder sb = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\\' && i + 3 < field.length()) {
+                sb.append((char) Integer.parseInt(field.substring(i + 1, i + 4), 8));
+                i += 3;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,244 @@
+package systemstatus.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import systemstatus.gto.GeoCellGto;
+
+/**
+ * Grid-indeks over sesjoner per geolokasjon, med ferdig aggregerte celler for hvert zoomnivå.
+ * Indeksen bygges fra cowrie_sessions én gang og oppdateres deretter bare med nye sesjoner.
+ */
+@Service
+@Profile("!agent")
+public class GeoIndexService {
+
+    public static final int MAX_ZOOM = 12;
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final int MAX_PENDING = 10_000;
+    private static final int RESOLVE_CHUNK = 1_000;
+    // IP-er som ikke har fått en ip_geo-rad innen dette gis opp, så de ikke fyller opp pending
+    private static final long PENDING_MAX_AGE_MS = 6 * 60 * 60 * 1000L;
+
+    private static final Logger log = LoggerFactory.getLogger(GeoIndexService.class);
+
+    private final JdbcTemplate jdbc;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Én cellemap per zoomnivå, nøkkel er (x << 32 | y)
+    private final List<Map<Long, Cell>> levels = new ArrayList<>(MAX_ZOOM + 1);
+    // IP-er som allerede er telt i uniqueIps. Et fast Bloom-filter i stedet for et sett med alle IP-er, så minnet
+    // ikke vokser med historikken; en falsk treff gjør bare at en ny IP ikke telles som unik (under 1 % ved 1M IP-er)
+    private final SeenIps knownIps = new SeenIps();
+
+    // Sesjoner fra IP-er som ennå ikke har geodata, telt per IP
+    private final Map<String, Pending> pending = new HashMap<>();
+    private long lastSessionId = 0;
+    private long expiredPending = 0;
+    private volatile long version = 0;
+
+    private static final class Pending {
+        long count;
+        final long firstSeenMs = System.currentTimeMillis();
+    }
+
+    private static final class SeenIps {
+        private static final int BITS = 1 << 24;
+        private static final int HASHES = 3;
+        private final long[] words = new long[BITS / 64];
+
+        // true hvis IP-en ikke var sett før
+        boolean add(String ip) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < ip.length(); i++) {
+                h ^= ip.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            int h1 = (int) h, h2 = (int) (h >>> 32) | 1;
+            boolean added = false;
+            for (int i = 0; i < HASHES; i++) {
+                int bit = (h1 + i * h2) & (BITS - 1);
+                long mask = 1L << (bit & 63);
+                if ((words[bit >>> 6] & mask) == 0) {
+                    words[bit >>> 6] |= mask;
+                    added = true;
+                }
+            }
+            return added;
+        }
+    }
+
+    private static final class Cell {
+        long count;
+        int uniqueIps;
+        double latSum;
+        double lonSum;
+    }
+
+    public GeoIndexService(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+        for (int z = 0; z <= MAX_ZOOM; z++) {
+            levels.add(new HashMap<>());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${honeypot.geo.refresh-ms}")
+    public void refresh() {
+        try {
+            int read;
+            do {
+                read = indexNewSessions();
+            } while (read == BATCH_SIZE);
+            resolvePending();
+        } catch (Exception e) {
+            log.warn("geo-indeks oppdatering feilet: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Øker hver gang indeksen har plassert en IP med geodata, så andre som venter på ip_geo (RecentEventService)
+     * vet når det er verdt å slå opp igjen.
+     */
+    public long version() {
+        return version;
+    }
+
+    public List<GeoCellGto> getCells(int zoom, double minLat, double minLon, double maxLat, double maxLon) {
+        int z = Math.max(0, Math.min(zoom, MAX_ZOOM));
+        List<GeoCellGto> cells = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            for (Cell cell : levels.get(z).values()) {
+                double lat = cell.latSum / cell.count;
+                double lon = cell.lonSum / cell.count;
+                if (lat >= minLat && lat <= maxLat && inLonRange(lon, minLon, maxLon)) {
+                    cells.add(new GeoCellGto(lat, lon, cell.count, cell.uniqueIps));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return cells;
+    }
+
+    private int indexNewSessions() {
+        List<Object[]> rows = jdbc.query("""
+            SELECT s.id, s.src_ip, g.latitude, g.longitude
+            FROM cowrie_sessions s
+            LEFT JOIN ip_geo g ON s.src_ip = g.ip
+            WHERE s.id > ?
+            ORDER BY s.id
+            LIMIT ?
+            """,
+            (rs, i) -> new Object[]{rs.getLong(1), rs.getString(2),
+                rs.getObject(3, Double.class), rs.getObject(4, Double.class)},
+            lastSessionId, BATCH_SIZE);
+
+        int processed = 0;
+        lock.writeLock().lock();
+        try {
+            for (Object[] row : rows) {
+                String ip = (String) row[1];
+                if (row[2] == null || row[3] == null) {
+                    // Er pending full, stopper vannmerket her så sesjonen leses på nytt når resolvePending har gjort plass
+                    if (pending.size() >= MAX_PENDING && !pending.containsKey(ip)) {
+                        log.warn("geo-indeks venter ved sesjon {}: {} IP-er mangler fortsatt geodata", row[0], pending.size());
+                        break;
+                    }
+                    pending.computeIfAbsent(ip, k -> new Pending()).count++;
+                } else {
+                    add(ip, (Double) row[2], (Double) row[3], 1);
+                }
+                lastSessionId = (Long) row[0];
+                processed++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return processed;
+    }
+
+    // Geodata slås opp etter at sesjonen er lagret, så IP-er uten treff prøves på nytt ved neste oppdatering.
+    // Finnes raden, men uten koordinater, tas IP-en ut av pending uten å telles på kartet.
+    private void resolvePending() {
+        List<String> ips;
+        lock.readLock().lock();
+        try {
+            ips = new ArrayList<>(pending.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        for (int from = 0; from < ips.size(); from += RESOLVE_CHUNK) {
+            String[] chunk = ips.subList(from, Math.min(from + RESOLVE_CHUNK, ips.size())).toArray(String[]::new);
+            List<Object[]> rows = jdbc.query(
+                "SELECT ip, latitude, longitude FROM ip_geo WHERE ip = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", chunk)),
+                (rs, i) -> new Object[]{rs.getString(1), rs.getObject(2, Double.class), rs.getObject(3, Double.class)});
+
+            lock.writeLock().lock();
+            try {
+                for (Object[] row : rows) {
+                    String ip = (String) row[0];
+                    Pending entry = pending.remove(ip);
+                    if (entry != null && row[1] != null && row[2] != null) {
+                        add(ip, (Double) row[1], (Double) row[2], entry.count);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        long cutoff = System.currentTimeMillis() - PENDING_MAX_AGE_MS;
+        lock.writeLock().lock();
+        try {
+            int before = pending.size();
+            pending.values().removeIf(entry -> entry.firstSeenMs < cutoff);
+            int expired = before - pending.size();
+            if (expired > 0) {
+                expiredPending += expired;
+                log.warn("ga opp geodata for {} IP-er etter {} timer uten ip_geo-rad ({} totalt)",
+                    expired, PENDING_MAX_AGE_MS / 3_600_000, expiredPending);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(String ip, double lat, double lon, long count) {
+        version++;
+        boolean newIp = knownIps.add(ip);
+        for (int z = 0; z <= MAX_ZOOM; z++) {
+            Cell cell = levels.get(z).computeIfAbsent(cellKey(z, lat, lon), k -> new Cell());
+            cell.count += count;
+            cell.latSum += lat * count;
+            cell.lonSum += lon * count;
+            if (newIp) cell.uniqueIps++;
+        }
+    }
+
+    private static long cellKey(int zoom, double lat, double lon) {
+        int size = 1 << zoom;
+        long x = Math.min(size - 1, (long) ((lon + 180) / 360 * size));
+        long y = Math.min(size - 1, (long) ((lat + 90) / 180 * size));
+        return (x << 32) | y;
+    }
+
+    // Støtter utsnitt som krysser datolinjen (minLon > maxLon)
+    private static boolean inLonRange(double lon, double minLon, double maxLon) {
+        return minLon <= maxLon ? lon >= minLon && lon <= maxLon : lon >= minLon || lon <= maxLon;
+    }
+}
@@ -0,0 +1,104 @@
+package systemstatus.service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import systemstatus.util.HeartbeatCodec;
+
+/**
+ * Tar imot heartbeats fra alle nodene på én DatagramChannel når cluster.mode=push.
+ * I motsetning til HTTP-API-et (server.address=127.0.0.1) må denne porten nås fra arbeidsnodene,
+ * så den binder som standard til alle grensesnitt; cluster.heartbeat.bind kan låse den til LAN-adressen.
+ * Pakker uten gyldig HMAC (cluster.heartbeat.secret) forkastes, og uten nøkkel startes ikke lytteren.
+ */
+@Service
+@Lazy(false)
+public class HeartbeatListener {
+
+    private static final Logger log = LoggerFactory.getLogger(HeartbeatListener.class);
+
+    public record Received(HeartbeatCodec.Heartbeat heartbeat, long receivedAtMs) {}
+
+    // Nøkkel er avsenderens IP-adresse
+    private final Map<String, Received> latest = new ConcurrentHashMap<>();
+
+    @Value("${cluster.mode}")
+    private String mode;
+
+    @Value("${cluster.heartbeat.port}")
+    private int port;
+
+    @Value("${cluster.heartbeat.bind}")
+    private String bind;
+
+    @Value("${cluster.heartbeat.secret}")
+    private String secret;
+
+    private byte[] key;
+
+    private DatagramChannel channel;
+
+    @PostConstruct
+    public void start() throws IOException{
+        if (!"push".equals(mode)) return;
+        if (secret == null || secret.isBlank()){
+            log.error("cluster.mode=push krever cluster.heartbeat.secret; heartbeats tas ikke imot");
+            return;
+        }
+        key = secret.getBytes(StandardCharsets.UTF_8);
+
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(bind, port));
+
+        Thread thread = new Thread(this::receiveLoop, "heartbeat-listener");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Lytter etter heartbeats på UDP {}", channel.getLocalAddress());
+    }
+
+    int localPort() throws IOException{
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    public Received latest(String host){
+        return latest.get(host);
+    }
+
+    private void receiveLoop(){
+        ByteBuffer buffer = ByteBuffer.allocate(HeartbeatCodec.MAX_SIZE);
+        while (channel.isOpen()){
+            try{
+                buffer.clear();
+                InetSocketAddress sender = (InetSocketAddress) channel.receive(buffer);
+                buffer.flip();
+                HeartbeatCodec.Heartbeat hb = HeartbeatCodec.decode(buffer, key);
+                latest.put(sender.getAddress().getHostAddress(), new Received(hb, System.currentTimeMillis()));
+            } catch(ClosedChannelException e){
+                return;
+            } catch(IllegalArgumentException e){
+                log.debug("forkastet heartbeat: {}", e.getMessage());
+            } catch(IOException e){
+                log.error("heartbeat-mottak feilet", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException{
+        if (channel != null) channel.close();
+    }
+}
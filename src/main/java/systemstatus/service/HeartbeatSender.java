@@ -0,0 +1,94 @@
+package systemstatus.service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import systemstatus.gto.*;
+import systemstatus.util.HeartbeatCodec;
+
+/**
+ * Sender en heartbeat til aggregatoren hvert intervall når cluster.heartbeat.target er satt (host:port).
+ */
+@Service
+@Lazy(false)
+public class HeartbeatSender {
+
+    private static final Logger log = LoggerFactory.getLogger(HeartbeatSender.class);
+
+    private final SystemStatusService service;
+    private final ByteBuffer buffer = ByteBuffer.allocate(HeartbeatCodec.MAX_SIZE);
+
+    @Value("${cluster.heartbeat.target}")
+    private String target;
+
+    @Value("${cluster.heartbeat.secret}")
+    private String secret;
+
+    private DatagramChannel channel;
+    private InetSocketAddress address;
+
+    public HeartbeatSender(SystemStatusService service){
+        this.service = service;
+    }
+
+    @Scheduled(fixedDelayString = "${cluster.heartbeat.interval-ms}")
+    public void send(){
+        if (target == null || target.isBlank()) return;
+        if (secret == null || secret.isBlank()){
+            log.warn("cluster.heartbeat.target er satt uten cluster.heartbeat.secret; sender ikke heartbeat");
+            return;
+        }
+
+        try{
+            if (channel == null){
+                int colon = target.lastIndexOf(':');
+                address = new InetSocketAddress(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)));
+                channel = DatagramChannel.open();
+            }
+
+            CpuStatusGto cpu = service.getCpu();
+            MemoryStatusGto memory = service.getMemory();
+            List<DiskStatusGto> disks = service.getDisks();
+            KernelStatusGto kernel = service.getKernel();
+
+            float diskTotal = 0, diskUsed = 0;
+            for (DiskStatusGto disk : disks){
+                diskTotal += disk.diskTotalGb();
+                diskUsed += disk.diskUsedGb();
+            }
+            int containers;
+            try{
+                containers = service.getDockerContainers().size();
+            } catch(Exception e){
+                containers = -1;
+            }
+
+            buffer.clear();
+            HeartbeatCodec.encode(new HeartbeatCodec.Heartbeat(kernel.hostName(),
+                (float) cpu.cpuTempC(), (float) cpu.user(), (float) cpu.system(), (float) cpu.idle(), cpu.throttled(),
+                (int) memory.totalMb(), (int) memory.usedMb(), diskTotal, diskUsed, containers), buffer,
+                secret.getBytes(StandardCharsets.UTF_8));
+            buffer.flip();
+            channel.send(buffer, address);
+        } catch(Exception e){
+            log.warn("heartbeat til {} feilet: {}", target, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException{
+        if (channel != null) channel.close();
+    }
+}
@@ -1,24 +1,33 @@
 package systemstatus.service;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import systemstatus.gto.*;
+import systemstatus.util.CommandFingerprint;
 
 @Service
+@Profile("!agent")
 public class HoneypotService {
 
     private final JdbcTemplate jdbc;
+    private final AttackerClusterService clusters;
+    private final RecentEventService recent;
+    private final CommandFingerprintService fingerprints;
 
-    public HoneypotService(JdbcTemplate jdbc) {
+    public HoneypotService(JdbcTemplate jdbc, AttackerClusterService clusters, RecentEventService recent,
+                           CommandFingerprintService fingerprints) {
         this.jdbc = jdbc;
-    }
-
-    public HoneypotDashboardGto getDashboard() {
-        return new HoneypotDashboardGto(getSummary(), getActiveSessions(), getRecentLogins(20), getRecentCommands(20), getTopIps(20),
-            getTopCredentials(20), getTopCommands(20), getHourlyActivity(48), getGeoData(), getRecentTcpip(20), getRecentFileTransfers(20), getMalware(), getDestinations());
+        this.clusters = clusters;
+        this.recent = recent;
+        this.fingerprints = fingerprints;
     }
 
     public HoneypotSummaryGto getSummary() {
@@ -47,19 +56,7 @@ public class HoneypotService {
     }
 
     public List<LoginAttemptGto> getRecentLogins(int limit) {
-        return jdbc.query("""
-            SELECT l.timestamp, l.src_ip, l.username, l.password, l.success,
-                   g.country, g.country_code, g.city
-            FROM cowrie_logins l
-            LEFT JOIN ip_geo g ON l.src_ip = g.ip
-            ORDER BY l.timestamp DESC
-            LIMIT ?
-            """,
-            (rs, i) -> new LoginAttemptGto(
-                rs.getString(1), rs.getString(2), rs.getString(3),
-                rs.getString(4), rs.getBoolean(5),
-                rs.getString(6), rs.getString(7), rs.getString(8)
-            ), limit);
+        return recent.getRecentLogins(limit);
     }
 
     public List<CredentialGto> getTopCredentials(int limit) {
@@ -93,30 +90,11 @@ public class HoneypotService {
     }
 
     public List<CommandGto> getRecentCommands(int limit) {
-        return jdbc.query("""
-            SELECT c.timestamp, c.src_ip, c.input, g.country
-            FROM cowrie_commands c
-            LEFT JOIN ip_geo g ON c.src_ip = g.ip
-            ORDER BY c.timestamp DESC
-            LIMIT ?
-            """,
-            (rs, i) -> new CommandGto(
-                rs.getString(1), rs.getString(2),
-                rs.getString(3), rs.getString(4)
-            ), limit);
+        return recent.getRecentCommands(limit);
     }
 
     public List<TopCommandGto> getTopCommands(int limit) {
-        return jdbc.query("""
-            SELECT input, COUNT(*) as count
-            FROM cowrie_commands
-            GROUP BY input
-            ORDER BY count DESC
-            LIMIT ?
-            """,
-            (rs, i) -> new TopCommandGto(
-                rs.getString(1), rs.getLong(2)
-            ), limit);
+        return topCommands(null, limit);
     }
 
     public List<ActivityGto> getHourlyActivity(int hours) {
@@ -208,6 +186,9 @@ public class HoneypotService {
             (rs, i) -> new CredentialGto(rs.getString(1), rs.getString(2), rs.getLong(3)),
             ip);
         
+        // 7. Topp kommandoer for denne IP-en, gruppert på fingeravtrykk
+        var topCommands = topCommands(ip, 10);
+
         var recentFiles = jdbc.query("""
             SELECT f.timestamp, f.src_ip, f.event_type, f.filename,
                    f.shasum, f.duplicate, g.country
@@ -215,6 +196,7 @@ public class HoneypotService {
             LEFT JOIN ip_geo g ON f.src_ip = g.ip
             WHERE f.src_ip = ?
             ORDER BY f.timestamp DESC
+            LIMIT 50
             """,
             (rs, i) -> new FileTransferGto(
                 rs.getString(1), rs.getString(2), rs.getString(3),
@@ -229,6 +211,7 @@ public class HoneypotService {
             LEFT JOIN ip_geo g ON t.src_ip = g.ip
             WHERE t.src_ip = ?
             ORDER BY t.timestamp DESC
+            LIMIT 50
             """,
             (rs, i) -> new TcpipEventGto(
                 rs.getString(1), ip, rs.getString(2),
@@ -241,40 +224,17 @@ public class HoneypotService {
             stats[0], stats[1], stats[2], stats[3],
             times[0], times[1],
             logins, commands, creds,
-            recentTcpip, recentFiles);
+            recentTcpip, recentFiles, topCommands,
+            clusters.getSimilarIps(ip, 10));
 
     }
 
     public List<TcpipEventGto> getRecentTcpip(int limit) {
-        return jdbc.query("""
-            SELECT t.timestamp, t.src_ip, t.dst_ip, t.dst_port, t.event_type,
-                   t.data, t.ja4h, g.country
-            FROM cowrie_tcpip t
-            LEFT JOIN ip_geo g ON t.src_ip = g.ip
-            ORDER BY t.timestamp DESC
-            LIMIT ?
-            """,
-            (rs, i) -> new TcpipEventGto(
-                rs.getString(1), rs.getString(2), rs.getString(3),
-                rs.getInt(4), rs.getString(5), rs.getString(6),
-                rs.getString(7), rs.getString(8)
-            ), limit);
+        return recent.getRecentTcpip(limit);
     }
 
     public List<FileTransferGto> getRecentFileTransfers(int limit) {
-        return jdbc.query("""
-            SELECT f.timestamp, f.src_ip, f.event_type, f.filename,
-                   f.shasum, f.duplicate, g.country
-            FROM cowrie_file_transfers f
-            LEFT JOIN ip_geo g ON f.src_ip = g.ip
-            ORDER BY f.timestamp DESC
-            LIMIT ?
-            """,
-            (rs, i) -> new FileTransferGto(
-                rs.getString(1), rs.getString(2), rs.getString(3),
-                rs.getString(4), rs.getString(5), rs.getBoolean(6),
-                rs.getString(7)
-            ), limit);
+        return recent.getRecentFileTransfers(limit);
     }
 
     public List<MalwareGto> getMalware() {
@@ -304,4 +264,65 @@ public class HoneypotService {
                 rs.getString(1), rs.getInt(2), rs.getLong(3)
             ));
     }
-}
\ No newline at end of file
+
+    /**
+     * Topp kommandoer gruppert på fingeravtrykk, for alle IP-er eller bare én. Når backfillen i
+     * CommandFingerprintService er ferdig grupperes det på kolonnen, og rader som ikke har fått fingerprint
+     * ennå (skrevet av Cowrie siden forrige kjøring) legges til ut fra input. Før det, eller om kolonnen ikke
+     * finnes, grupperes det på rå input og fingeravtrykket regnes ut her.
+     */
+    private List<TopCommandGto> topCommands(String ip, int limit) {
+        String ipFilter = ip == null ? "" : "AND src_ip = ?";
+        Object[] args = ip == null ? new Object[]{limit} : new Object[]{ip, limit};
+        Map<Long, TopCommandGto> merged = new LinkedHashMap<>();
+
+        if (fingerprints.isBackfilled()) {
+            jdbc.query("""
+                WITH top AS (
+                    SELECT fingerprint, COUNT(*) as count
+                    FROM cowrie_commands
+                    WHERE fingerprint IS NOT NULL %s
+                    GROUP BY fingerprint
+                    ORDER BY count DESC
+                    LIMIT ?
+                )
+                SELECT (SELECT c.input FROM cowrie_commands c WHERE c.fingerprint = t.fingerprint LIMIT 1),
+                       t.count, t.fingerprint
+                FROM top t
+                """.formatted(ipFilter),
+                rs -> { merge(merged, rs.getLong(3), rs.getString(1), rs.getLong(2)); }, args);
+            // Få rader, og cowrie_commands_unfingerprinted_idx dekker dem
+            jdbc.query("""
+                SELECT input, COUNT(*) FROM cowrie_commands
+                WHERE fingerprint IS NULL %s
+                GROUP BY input
+                """.formatted(ipFilter),
+                rs -> { mergeInput(merged, rs.getString(1), rs.getLong(2)); },
+                ip == null ? new Object[0] : new Object[]{ip});
+        } else {
+            // Flere input kan gi samme fingeravtrykk, så det hentes litt mer enn limit før sammenslåingen
+            args[args.length - 1] = limit * 4;
+            jdbc.query("""
+                SELECT input, COUNT(*) as count FROM cowrie_commands
+                WHERE true %s
+                GROUP BY input
+                ORDER BY count DESC
+                LIMIT ?
+                """.formatted(ipFilter),
+                rs -> { mergeInput(merged, rs.getString(1), rs.getLong(2)); }, args);
+        }
+
+        List<TopCommandGto> result = new ArrayList<>(merged.values());
+        result.sort(Comparator.comparingLong(TopCommandGto::count).reversed());
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    private static void mergeInput(Map<Long, TopCommandGto> merged, String input, long count) {
+        merge(merged, CommandFingerprint.fingerprint(input == null ? "" : input), input, count);
+    }
+
+    private static void merge(Map<Long, TopCommandGto> merged, long fingerprint, String input, long count) {
+        merged.merge(fingerprint, new TopCommandGto(input, count, CommandFingerprint.toHex(fingerprint)),
+            (a, b) -> new TopCommandGto(a.input(), a.count() + b.count(), a.fingerprint()));
+    }
+}
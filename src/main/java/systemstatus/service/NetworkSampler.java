@@ -0,0 +1,170 @@
+package systemstatus.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import systemstatus.gto.NetInterfaceGto;
+import systemstatus.gto.NetworkStatusGto;
+import systemstatus.util.ProcReader;
+
+/**
+ * Leser /proc/net/dev, /proc/net/sockstat og /proc/net/tcp{,6} med fast intervall og regner ut
+ * rater per nettverksgrensesnitt og antall TCP-forbindelser per tilstand.
+ */
+@Service
+@Lazy(false)
+public class NetworkSampler {
+
+    private static final Path DEV_PATH = Path.of("/proc/net/dev");
+    private static final Path SOCKSTAT_PATH = Path.of("/proc/net/sockstat");
+    private static final Path TCP_PATH = Path.of("/proc/net/tcp");
+    private static final Path TCP6_PATH = Path.of("/proc/net/tcp6");
+
+    // Tilstandene i /proc/net/tcp, indeksert på hex-verdien
+    private static final String[] TCP_STATES = {
+        null, "ESTABLISHED", "SYN_SENT", "SYN_RECV", "FIN_WAIT1", "FIN_WAIT2", "TIME_WAIT",
+        "CLOSE", "CLOSE_WAIT", "LAST_ACK", "LISTEN", "CLOSING", "NEW_SYN_RECV"
+    };
+
+    // Indekser i tellerarrayet per grensesnitt
+    private static final int RX_BYTES = 0, RX_PACKETS = 1, RX_ERRS = 2, RX_DROP = 3;
+    private static final int TX_BYTES = 4, TX_PACKETS = 5, TX_ERRS = 6, TX_DROP = 7;
+    private static final int GENERATION = 8;
+
+    private static final Logger log = LoggerFactory.getLogger(NetworkSampler.class);
+
+    private final ProcReader reader = new ProcReader();
+    private final int[] stateCounts = new int[TCP_STATES.length];
+
+    // Dobbelbuffer av tellere, så arrayene gjenbrukes mellom målingene
+    private Map<String, long[]> previous = new HashMap<>();
+    private Map<String, long[]> current = new HashMap<>();
+    private long previousNanos;
+    private long generation;
+
+    private volatile NetworkStatusGto latest;
+
+    public NetworkStatusGto getLatest() {
+        return latest;
+    }
+
+    @Scheduled(fixedDelayString = "${system.sampler.interval-ms}")
+    public void sample() {
+        try {
+            long now = System.nanoTime();
+            readDev();
+
+            List<NetInterfaceGto> interfaces = new ArrayList<>();
+            if (previousNanos != 0) {
+                double seconds = (now - previousNanos) / 1e9;
+                for (var entry : current.entrySet()) {
+                    long[] prev = previous.get(entry.getKey());
+                    if (prev != null) interfaces.add(toGto(entry.getKey(), prev, entry.getValue(), seconds));
+                }
+                interfaces.sort((a, b) -> a.name().compareTo(b.name()));
+            }
+
+            Map<String, long[]> swap = previous;
+            previous = current;
+            current = swap;
+            previousNanos = now;
+
+            long[] sockstat = readSockstat();
+            latest = new NetworkStatusGto(List.copyOf(interfaces), readTcpStates(), sockstat[0], sockstat[1], sockstat[2], sockstat[3]);
+        } catch (IOException | RuntimeException e) {
+            log.warn("sample() av nettverk feilet: {}", e.getMessage());
+        }
+    }
+
+    private static NetInterfaceGto toGto(String name, long[] prev, long[] cur, double seconds) {
+        return new NetInterfaceGto(name,
+            (cur[RX_BYTES] - prev[RX_BYTES]) / seconds,
+            (cur[TX_BYTES] - prev[TX_BYTES]) / seconds,
+            (cur[RX_PACKETS] - prev[RX_PACKETS]) / seconds,
+            (cur[TX_PACKETS] - prev[TX_PACKETS]) / seconds,
+            cur[RX_DROP], cur[TX_DROP], cur[RX_ERRS], cur[TX_ERRS]);
+    }
+
+    // "  eth0: rx_bytes rx_packets rx_errs rx_drop fifo frame compressed multicast tx_bytes tx_packets tx_errs tx_drop ..."
+    private void readDev() throws IOException {
+        generation++;
+        reader.load(DEV_PATH);
+        reader.nextLine();
+        reader.nextLine();
+        while (reader.hasMore()) {
+            String name = reader.nextName(':');
+            if (!name.isEmpty() && !name.equals("lo")) {
+                long[] counters = current.computeIfAbsent(name, k -> new long[GENERATION + 1]);
+                counters[GENERATION] = generation;
+                counters[RX_BYTES] = reader.nextLong();
+                counters[RX_PACKETS] = reader.nextLong();
+                counters[RX_ERRS] = reader.nextLong();
+                counters[RX_DROP] = reader.nextLong();
+                for (int i = 0; i < 4; i++) reader.nextLong();
+                counters[TX_BYTES] = reader.nextLong();
+                counters[TX_PACKETS] = reader.nextLong();
+                counters[TX_ERRS] = reader.nextLong();
+                counters[TX_DROP] = reader.nextLong();
+            }
+            reader.nextLine();
+        }
+        // Fjerner grensesnitt som har forsvunnet siden forrige gang arrayet ble brukt
+        current.values().removeIf(counters -> counters[GENERATION] != generation);
+    }
+
+    // "TCP: inuse 5 orphan 0 tw 2 alloc 7 mem 1" og "UDP: inuse 3 mem 2"
+    private long[] readSockstat() throws IOException {
+        long tcpInUse = 0, tcpTimeWait = 0, tcpOrphan = 0, udpInUse = 0;
+        reader.load(SOCKSTAT_PATH);
+        while (reader.hasMore()) {
+            if (reader.startsWith("TCP:")) {
+                reader.skipToken();
+                while (reader.hasMore() && !reader.startsWith("\n")) {
+                    if (reader.startsWith("inuse ")) { reader.skipToken(); tcpInUse = reader.nextLong(); }
+                    else if (reader.startsWith("orphan ")) { reader.skipToken(); tcpOrphan = reader.nextLong(); }
+                    else if (reader.startsWith("tw ")) { reader.skipToken(); tcpTimeWait = reader.nextLong(); }
+                    else { reader.skipToken(); reader.skipToken(); }
+                }
+            } else if (reader.startsWith("UDP:")) {
+                reader.skipToken();
+                if (reader.startsWith("inuse ")) { reader.skipToken(); udpInUse = reader.nextLong(); }
+            }
+            if (!reader.nextLine()) break;
+        }
+        return new long[]{tcpInUse, tcpTimeWait, tcpOrphan, udpInUse};
+    }
+
+    // "  0: 0100007F:1F91 00000000:0000 0A ..." der fjerde kolonne er tilstanden i hex
+    private Map<String, Integer> readTcpStates() throws IOException {
+        java.util.Arrays.fill(stateCounts, 0);
+        for (Path path : new Path[]{TCP_PATH, TCP6_PATH}) {
+            if (!Files.exists(path)) continue;
+            reader.load(path);
+            while (reader.nextLine()) {
+                reader.skipToken();
+                reader.skipToken();
+                reader.skipToken();
+                int state = reader.nextHex();
+                if (state > 0 && state < stateCounts.length) stateCounts[state]++;
+            }
+        }
+
+        Map<String, Integer> states = new LinkedHashMap<>();
+        for (int i = 1; i < TCP_STATES.length; i++) {
+            if (stateCounts[i] > 0) states.put(TCP_STATES[i], stateCounts[i]);
+        }
+        return states;
+    }
+}
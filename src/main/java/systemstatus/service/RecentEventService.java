@@ -0,0 +1,253 @@
+package systemstatus.service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import systemstatus.gto.CommandGto;
+import systemstatus.gto.FileTransferGto;
+import systemstatus.gto.LoginAttemptGto;
+import systemstatus.gto.TcpipEventGto;
+import systemstatus.util.RecentBuffer;
+
+/**
+ * De siste hendelsene per type (innlogginger, kommandoer, tcpip, filoverføringer) holdes i minnet med
+ * geo-data allerede slått opp. Bufferne fylles fra databasen ved første kjøring, og deretter hentes bare
+ * rader med id over vannmerket. /recent-* og dashboardet svarer fra bufferne uten databasekall; er
+ * limit større enn kapasiteten, eller bufferet ikke lastet ennå, går spørringen til databasen som før.
+ * Begge veier sorterer på timestamp DESC, id DESC, så en rad som ble lest inn sent havner på samme plass.
+ */
+@Service
+@Profile("!agent")
+public class RecentEventService {
+
+    private static final Logger log = LoggerFactory.getLogger(RecentEventService.class);
+
+    private final JdbcTemplate jdbc;
+    private final GeoIndexService geoIndex;
+
+    private final Feed<LoginAttemptGto> logins;
+    private final Feed<CommandGto> commands;
+    private final Feed<TcpipEventGto> tcpip;
+    private final Feed<FileTransferGto> files;
+
+    public RecentEventService(JdbcTemplate jdbc, GeoIndexService geoIndex, @Value("${honeypot.recent.capacity}") int capacity) {
+        this.jdbc = jdbc;
+        this.geoIndex = geoIndex;
+        this.logins = new Feed<>("innlogginger", capacity, "cowrie_logins", "l", """
+            SELECT l.timestamp, l.src_ip, l.username, l.password, l.success,
+                   g.country, g.country_code, g.city, l.id AS row_id, l.timestamp AS row_ts
+            FROM cowrie_logins l
+            LEFT JOIN ip_geo g ON l.src_ip = g.ip
+            """,
+            (rs, i) -> new LoginAttemptGto(
+                rs.getString(1), rs.getString(2), rs.getString(3),
+                rs.getString(4), rs.getBoolean(5),
+                rs.getString(6), rs.getString(7), rs.getString(8)
+            ),
+            new GeoFill<>(LoginAttemptGto::sourceIp, LoginAttemptGto::country, (r, g) -> new LoginAttemptGto(
+                r.timestamp(), r.sourceIp(), r.username(), r.password(), r.success(),
+                g.country(), g.countryCode(), g.city())));
+        this.commands = new Feed<>("kommandoer", capacity, "cowrie_commands", "c", """
+            SELECT c.timestamp, c.src_ip, c.input, g.country, c.id AS row_id, c.timestamp AS row_ts
+            FROM cowrie_commands c
+            LEFT JOIN ip_geo g ON c.src_ip = g.ip
+            """,
+            (rs, i) -> new CommandGto(
+                rs.getString(1), rs.getString(2),
+                rs.getString(3), rs.getString(4)
+            ),
+            new GeoFill<>(CommandGto::sourceIp, CommandGto::country, (r, g) -> new CommandGto(
+                r.timestamp(), r.sourceIp(), r.input(), g.country())));
+        this.tcpip = new Feed<>("tcpip", capacity, "cowrie_tcpip", "t", """
+            SELECT t.timestamp, t.src_ip, t.dst_ip, t.dst_port, t.event_type,
+                   t.data, t.ja4h, g.country, t.id AS row_id, t.timestamp AS row_ts
+            FROM cowrie_tcpip t
+            LEFT JOIN ip_geo g ON t.src_ip = g.ip
+            """,
+            (rs, i) -> new TcpipEventGto(
+                rs.getString(1), rs.getString(2), rs.getString(3),
+                rs.getInt(4), rs.getString(5), rs.getString(6),
+                rs.getString(7), rs.getString(8)
+            ),
+            new GeoFill<>(TcpipEventGto::sourceIp, TcpipEventGto::country, (r, g) -> new TcpipEventGto(
+                r.timestamp(), r.sourceIp(), r.dstIp(), r.dstPort(), r.eventType(), r.data(), r.ja4h(), g.country())));
+        this.files = new Feed<>("filoverføringer", capacity, "cowrie_file_transfers", "f", """
+            SELECT f.timestamp, f.src_ip, f.event_type, f.filename,
+                   f.shasum, f.duplicate, g.country, f.id AS row_id, f.timestamp AS row_ts
+            FROM cowrie_file_transfers f
+            LEFT JOIN ip_geo g ON f.src_ip = g.ip
+            """,
+            (rs, i) -> new FileTransferGto(
+                rs.getString(1), rs.getString(2), rs.getString(3),
+                rs.getString(4), rs.getString(5), rs.getBoolean(6),
+                rs.getString(7)
+            ),
+            new GeoFill<>(FileTransferGto::sourceIp, FileTransferGto::country, (r, g) -> new FileTransferGto(
+                r.timestamp(), r.sourceIp(), r.eventType(), r.filename(), r.shasum(), r.duplicate(), g.country())));
+    }
+
+    @Scheduled(fixedDelayString = "${honeypot.recent.refresh-ms}")
+    public void refresh() {
+        logins.refresh();
+        commands.refresh();
+        tcpip.refresh();
+        files.refresh();
+    }
+
+    public List<LoginAttemptGto> getRecentLogins(int limit) {
+        return logins.latest(limit);
+    }
+
+    public List<CommandGto> getRecentCommands(int limit) {
+        return commands.latest(limit);
+    }
+
+    public List<TcpipEventGto> getRecentTcpip(int limit) {
+        return tcpip.latest(limit);
+    }
+
+    public List<FileTransferGto> getRecentFileTransfers(int limit) {
+        return files.latest(limit);
+    }
+
+    private record Row<T>(long id, Instant timestamp, T value) {}
+
+    // Samme rekkefølge som ORDER BY timestamp DESC, id DESC i Postgres (NULL først ved DESC)
+    private static final Comparator<Row<?>> NEWEST_FIRST = Comparator
+        .comparing((Row<?> row) -> row.timestamp(), Comparator.nullsLast(Comparator.naturalOrder()))
+        .thenComparingLong(Row::id)
+        .reversed();
+
+    private record Geo(String country, String countryCode, String city) {}
+
+    // Hvordan en hendelsestype leses og bygges på nytt med geodata
+    private record GeoFill<T>(Function<T, String> ip, Function<T, String> country, BiFunction<T, Geo, T> with) {}
+
+    private final class Feed<T> {
+        private static final String ORDER = " ORDER BY %1$s.timestamp DESC, %1$s.id DESC LIMIT ?";
+
+        private final String name;
+        private final String table;
+        private final String alias;
+        private final String select;
+        private final RowMapper<Row<T>> mapper;
+        private final RecentBuffer<T> buffer;
+        private final GeoFill<T> geo;
+        // Resten skrives bare av refresh() (planleggertråden): vannmerket, radene bak bufferet med
+        // sorteringsnøkkel, og IP-er uten land som er slått opp siden geo-indeksen sist fant noe nytt
+        private long lastId = 0;
+        private List<Row<T>> rows = List.of();
+        private final Set<String> lookedUp = new HashSet<>();
+        private long lookedUpAtVersion = -1;
+
+        Feed(String name, int capacity, String table, String alias, String select, RowMapper<T> mapper, GeoFill<T> geo) {
+            this.name = name;
+            this.table = table;
+            this.alias = alias;
+            this.select = select;
+            this.mapper = (rs, i) -> {
+                Timestamp ts = rs.getTimestamp("row_ts");
+                return new Row<>(rs.getLong("row_id"), ts == null ? null : ts.toInstant(), mapper.mapRow(rs, i));
+            };
+            this.buffer = new RecentBuffer<>(capacity);
+            this.geo = geo;
+        }
+
+        List<T> latest(int limit) {
+            List<T> cached = buffer.latest(limit);
+            if (cached != null) return cached;
+            return jdbc.query(select + ORDER.formatted(alias), (rs, i) -> mapper.mapRow(rs, i).value(), limit);
+        }
+
+        void refresh() {
+            try {
+                // Øvre grense først, så rader som kommer inn under spørringen ikke blir lest to ganger
+                Long maxId = jdbc.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+                if (maxId == null || maxId <= lastId) {
+                    if (!buffer.isLoaded()) buffer.replace(List.of());
+                    fillMissingGeo();
+                    return;
+                }
+
+                // Blant de nye radene kan bare de kapasitet nyeste etter timestamp havne i bufferet
+                List<Row<T>> fresh = jdbc.query(
+                    select + "WHERE " + alias + ".id > ? AND " + alias + ".id <= ?" + ORDER.formatted(alias),
+                    mapper, lastId, maxId, buffer.capacity());
+                lastId = maxId;
+
+                List<Row<T>> merged = new ArrayList<>(rows.size() + fresh.size());
+                merged.addAll(rows);
+                merged.addAll(fresh);
+                merged.sort(NEWEST_FIRST);
+                publish(merged.subList(0, Math.min(buffer.capacity(), merged.size())));
+                fillMissingGeo();
+            } catch (Exception e) {
+                log.warn("oppdatering av siste {} feilet: {}", name, e.getMessage());
+            }
+        }
+
+        private void publish(List<Row<T>> newestFirst) {
+            rows = List.copyOf(newestFirst);
+            List<T> values = new ArrayList<>(rows.size());
+            for (Row<T> row : rows) values.add(row.value());
+            buffer.replace(values);
+        }
+
+        // ip_geo fylles utenfra etter at sesjonen er lagret, så rader som kom inn uten land slås opp på nytt;
+        // ellers ville de nyeste angriperne alltid stått uten land. En IP som ikke fantes spørres ikke igjen
+        // før geo-indeksen har plassert noe nytt, så IP-er som aldri får geodata ikke gir et oppslag hvert intervall.
+        private void fillMissingGeo() {
+            long version = geoIndex.version();
+            if (version != lookedUpAtVersion) {
+                lookedUp.clear();
+                lookedUpAtVersion = version;
+            }
+
+            Set<String> missing = new HashSet<>();
+            for (Row<T> row : rows) {
+                String ip = geo.ip().apply(row.value());
+                if (ip != null && geo.country().apply(row.value()) == null) missing.add(ip);
+            }
+            lookedUp.retainAll(missing);
+            Set<String> ips = new HashSet<>(missing);
+            ips.removeAll(lookedUp);
+            if (ips.isEmpty()) return;
+
+            String[] array = ips.toArray(String[]::new);
+            Map<String, Geo> found = new HashMap<>();
+            jdbc.query("SELECT ip, country, country_code, city FROM ip_geo WHERE ip = ANY(?) AND country IS NOT NULL",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", array)),
+                rs -> {
+                    found.put(rs.getString(1), new Geo(rs.getString(2), rs.getString(3), rs.getString(4)));
+                });
+            lookedUp.addAll(ips);
+            lookedUp.removeAll(found.keySet());
+            if (found.isEmpty()) return;
+
+            List<Row<T>> updated = new ArrayList<>(rows.size());
+            for (Row<T> row : rows) {
+                Geo g = geo.country().apply(row.value()) == null ? found.get(geo.ip().apply(row.value())) : null;
+                updated.add(g == null ? row : new Row<>(row.id(), row.timestamp(), geo.with().apply(row.value(), g)));
+            }
+            publish(updated);
+        }
+    }
+}
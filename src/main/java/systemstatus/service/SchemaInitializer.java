@@ -0,0 +1,123 @@
+package systemstatus.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Kjører schema.sql ved oppstart. I motsetning til spring.sql.init stopper ikke oppstarten om databasen
+ * er nede; da prøves det på nytt med økende pause til det lykkes. Jobber som trenger kolonnene og
+ * tabellene herfra (fingerprint, ingest) venter på {@link #isReady()}.
+ * <p>
+ * Tabellene eies av Cowrie, så en ALTER kan feile selv om databasen svarer (f.eks. når rollen ikke eier
+ * tabellen). Populatoren logger bare slike feil, derfor sjekkes det etterpå at kolonnene og indeksene
+ * jobbene er avhengige av faktisk finnes før {@link #isReady()} blir true.
+ */
+@Service
+@Profile("!agent")
+public class SchemaInitializer implements InitializingBean {
+
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    // Det som må finnes for at fingerprint og ingest skal virke. Tidslinjeindeksene gjør bare
+    // spørringene raskere og er ikke med her.
+    private static final List<String> REQUIRED_COLUMNS = List.of(
+        "cowrie_commands.fingerprint",
+        "cowrie_sessions.session_id",
+        "cowrie_logins.session_id", "cowrie_logins.event_id",
+        "cowrie_commands.session_id", "cowrie_commands.event_id",
+        "cowrie_tcpip.session_id", "cowrie_tcpip.event_id",
+        "cowrie_file_transfers.session_id", "cowrie_file_transfers.event_id",
+        "cowrie_ingest_offsets.file_key", "cowrie_ingest_offsets.position");
+    private static final List<String> REQUIRED_INDEXES = List.of(
+        "cowrie_commands_fingerprint_idx",
+        "cowrie_commands_unfingerprinted_idx",
+        "cowrie_sessions_session_id_idx",
+        "cowrie_logins_event_id_idx",
+        "cowrie_commands_event_id_idx",
+        "cowrie_tcpip_event_id_idx",
+        "cowrie_file_transfers_event_id_idx");
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaInitializer.class);
+
+    private final DataSource dataSource;
+
+    private volatile boolean ready = false;
+    private long backoffMs = 1_000;
+    private long nextAttemptMs = 0;
+
+    public SchemaInitializer(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        tryInit();
+    }
+
+    @Scheduled(fixedDelay = 1_000)
+    public void retry() {
+        if (ready || System.currentTimeMillis() < nextAttemptMs) return;
+        tryInit();
+    }
+
+    private synchronized void tryInit() {
+        if (ready) return;
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource("schema.sql"));
+        // Enkeltsetninger som feiler logges av populatoren; bare en utilgjengelig database kaster her
+        populator.setContinueOnError(true);
+        try {
+            populator.execute(dataSource);
+            List<String> missing = missingObjects();
+            if (missing.isEmpty()) {
+                ready = true;
+                log.info("schema.sql kjørt");
+                return;
+            }
+            log.error("schema.sql kjørt, men {} mangler (eier rollen Cowrie-tabellene?), prøver igjen om {} ms",
+                missing, backoffMs);
+        } catch (Exception e) {
+            log.warn("schema.sql ble ikke kjørt, prøver igjen om {} ms: {}", backoffMs, e.getMessage());
+        }
+        nextAttemptMs = System.currentTimeMillis() + backoffMs;
+        backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+    }
+
+    private List<String> missingObjects() {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        Set<String> present = new HashSet<>(jdbc.queryForList("""
+            SELECT table_name || '.' || column_name FROM information_schema.columns
+            WHERE table_schema = current_schema() AND table_name LIKE 'cowrie%'
+            """, String.class));
+        present.addAll(jdbc.queryForList("""
+            SELECT indexname FROM pg_indexes
+            WHERE schemaname = current_schema() AND tablename LIKE 'cowrie%'
+            """, String.class));
+
+        List<String> missing = new ArrayList<>();
+        for (String name : REQUIRED_COLUMNS) {
+            if (!present.contains(name)) missing.add(name);
+        }
+        for (String name : REQUIRED_INDEXES) {
+            if (!present.contains(name)) missing.add(name);
+        }
+        return missing;
+    }
+}
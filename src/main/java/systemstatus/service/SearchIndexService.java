@@ -0,0 +1,197 @@
+package systemstatus.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import systemstatus.gto.*;
+import systemstatus.util.TrigramIndex;
+
+/**
+ * Substring-søk i kommandoer og innloggingsforsøk. Trigram-indeksene gir kandidat-id-er,
+ * som så verifiseres og hentes fra databasen i synkende id-rekkefølge.
+ */
+@Service
+@Profile("!agent")
+public class SearchIndexService {
+
+    private static final int BATCH_SIZE = 20_000;
+    // Største antall id-er i ett ANY(?)-array når verify dobler bitene
+    private static final int MAX_CHUNK = 16_384;
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexService.class);
+
+    private final JdbcTemplate jdbc;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TrigramIndex commands = new TrigramIndex();
+    private final TrigramIndex logins = new TrigramIndex();
+    // TrigramIndex lagrer id-er som int; rader over int-området indekseres ikke, og det logges én gang per tabell
+    private boolean commandsFull = false;
+    private boolean loginsFull = false;
+
+    private record Hit<T>(long id, T row) {}
+
+    public SearchIndexService(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @Scheduled(fixedDelayString = "${honeypot.search.refresh-ms}")
+    public void refresh() {
+        try {
+            int read;
+            do {
+                read = indexCommands();
+            } while (read == BATCH_SIZE);
+            do {
+                read = indexLogins();
+            } while (read == BATCH_SIZE);
+        } catch (Exception e) {
+            log.warn("oppdatering av søkeindeks feilet: {}", e.getMessage());
+        }
+    }
+
+    public SearchResultGto search(String query, int limit, Long beforeCommand, Long beforeLogin) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        int[] commandIds, loginIds;
+
+        lock.readLock().lock();
+        try {
+            commandIds = commands.candidates(query);
+            loginIds = logins.candidates(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Hit<CommandGto>> commandHits = verify(commandIds, beforeCommand, limit, """
+            SELECT c.id, c.timestamp, c.src_ip, c.input, g.country
+            FROM cowrie_commands c
+            LEFT JOIN ip_geo g ON c.src_ip = g.ip
+            WHERE c.id = ANY(?) AND strpos(lower(c.input), ?) > 0
+            ORDER BY c.id DESC
+            """,
+            (rs, i) -> new Hit<>(rs.getLong(1), new CommandGto(
+                rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5))),
+            needle);
+
+        List<Hit<LoginAttemptGto>> loginHits = verify(loginIds, beforeLogin, limit, """
+            SELECT l.id, l.timestamp, l.src_ip, l.username, l.password, l.success,
+                   g.country, g.country_code, g.city
+            FROM cowrie_logins l
+            LEFT JOIN ip_geo g ON l.src_ip = g.ip
+            WHERE l.id = ANY(?) AND (strpos(lower(l.username), ?) > 0 OR strpos(lower(l.password), ?) > 0)
+            ORDER BY l.id DESC
+            """,
+            (rs, i) -> new Hit<>(rs.getLong(1), new LoginAttemptGto(
+                rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5),
+                rs.getBoolean(6), rs.getString(7), rs.getString(8), rs.getString(9))),
+            needle, needle);
+
+        return new SearchResultGto(
+            commandHits.stream().map(Hit::row).toList(),
+            loginHits.stream().map(Hit::row).toList(),
+            nextCursor(commandHits, limit),
+            nextCursor(loginHits, limit));
+    }
+
+    // Går gjennom kandidatene fra høyeste id og nedover i biter til siden er full
+    private <T> List<Hit<T>> verify(int[] candidates, Long before, int limit, String sql, RowMapper<Hit<T>> mapper, String... needle) {
+        List<Hit<T>> hits = new ArrayList<>();
+        int end = candidates.length;
+        if (before != null) {
+            int pos = Arrays.binarySearch(candidates, (int) Math.min(before, Integer.MAX_VALUE));
+            end = pos >= 0 ? pos : -pos - 1;
+        }
+
+        int chunk = Math.max(limit * 4, 64);
+        while (end > 0 && hits.size() < limit) {
+            int start = Math.max(0, end - chunk);
+            Integer[] ids = new Integer[end - start];
+            for (int i = 0; i < ids.length; i++) ids[i] = candidates[start + i];
+
+            List<Hit<T>> rows = jdbc.query(sql, ps -> {
+                ps.setArray(1, ps.getConnection().createArrayOf("integer", ids));
+                for (int i = 0; i < needle.length; i++) ps.setString(i + 2, needle[i]);
+            }, mapper);
+
+            for (Hit<T> row : rows) {
+                if (hits.size() == limit) break;
+                hits.add(row);
+            }
+            end = start;
+            chunk = Math.min(chunk * 2, MAX_CHUNK);
+        }
+        return hits;
+    }
+
+    private static Long nextCursor(List<? extends Hit<?>> hits, int limit) {
+        return !hits.isEmpty() && hits.size() == limit ? hits.get(hits.size() - 1).id() : null;
+    }
+
+    private int indexCommands() {
+        if (commandsFull) return 0;
+        List<Object[]> rows = jdbc.query(
+            "SELECT id, input FROM cowrie_commands WHERE id > ? ORDER BY id LIMIT ?",
+            (rs, i) -> new Object[]{rs.getLong(1), rs.getString(2)},
+            currentLastId(commands), BATCH_SIZE);
+
+        lock.writeLock().lock();
+        try {
+            for (Object[] row : rows) {
+                long id = (Long) row[0];
+                if (id > Integer.MAX_VALUE) {
+                    if (!commandsFull) log.warn("søkeindeksen for kommandoer stopper ved id {}: over int-området", id);
+                    commandsFull = true;
+                    return 0;
+                }
+                commands.add((int) id, (String) row[1]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return rows.size();
+    }
+
+    private int indexLogins() {
+        if (loginsFull) return 0;
+        List<Object[]> rows = jdbc.query(
+            "SELECT id, username, password FROM cowrie_logins WHERE id > ? ORDER BY id LIMIT ?",
+            (rs, i) -> new Object[]{rs.getLong(1), rs.getString(2), rs.getString(3)},
+            currentLastId(logins), BATCH_SIZE);
+
+        lock.writeLock().lock();
+        try {
+            for (Object[] row : rows) {
+                long id = (Long) row[0];
+                if (id > Integer.MAX_VALUE) {
+                    if (!loginsFull) log.warn("søkeindeksen for innlogginger stopper ved id {}: over int-området", id);
+                    loginsFull = true;
+                    return 0;
+                }
+                logins.add((int) id, (String) row[1]);
+                logins.add((int) id, (String) row[2]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return rows.size();
+    }
+
+    private long currentLastId(TrigramIndex index) {
+        lock.readLock().lock();
+        try {
+            return Math.max(index.lastId(), 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package systemstatus.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+
+import systemstatus.gto.*;
+
+@Service
+public class StatusVersionService {
+
+    private final SystemStatusService service;
+
+    // Versjoner er bare sammenlignbare innenfor én prosess. Klokka kan ikke seedes fra veggtid (Pi-ene har ingen
+    // RTC og kan starte med en tidligere tid), så hver prosess får i stedet en egen id som klienten sammenligner
+    private final String instance = UUID.randomUUID().toString();
+    private long clock = 0;
+    private final Map<String, Section> sections = new HashMap<>();
+
+    private record Section(Object value, long version) {}
+
+    public StatusVersionService(SystemStatusService service){
+        this.service = service;
+    }
+
+    /**
+     * Returnerer bare seksjonene som har endret seg etter {@code since}. Seksjoner som er uendret er null.
+     */
+    public StatusDeltaGto getStatusSince(long since) throws Exception{
+        SystemStatusGto status = service.getStatus();
+
+        synchronized (sections){
+            track("cpu", status.cpu());
+            track("nvme", status.nvme());
+            track("memory", status.memory());
+            track("disks", status.disks());
+            track("kernel", status.kernel());
+            track("dockers", status.dockers());
+            track("diskIo", status.diskIo());
+            track("network", status.network());
+
+            return new StatusDeltaGto(clock, instance,
+                changedSince("cpu", since),
+                changedSince("nvme", since),
+                changedSince("memory", since),
+                changedSince("disks", since),
+                changedSince("kernel", since),
+                changedSince("dockers", since),
+                changedSince("diskIo", since),
+                changedSince("network", since));
+        }
+    }
+
+    private void track(String name, Object value){
+        Section current = sections.get(name);
+        if (current == null || !Objects.equals(current.value(), value)){
+            sections.put(name, new Section(value, ++clock));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T changedSince(String name, long since){
+        Section section = sections.get(name);
+        return section.version() > since ? (T) section.value() : null;
+    }
+}
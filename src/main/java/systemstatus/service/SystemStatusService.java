@@ -16,10 +16,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import systemstatus.gto.CpuStatusGto;
+import systemstatus.gto.DiskIoGto;
 import systemstatus.gto.DiskStatusGto;
 import systemstatus.gto.DockerStatusGto;
 import systemstatus.gto.KernelStatusGto;
 import systemstatus.gto.MemoryStatusGto;
+import systemstatus.gto.NetworkStatusGto;
 import systemstatus.gto.NvmeStatusGto;
 import systemstatus.gto.SystemStatusGto;
 import systemstatus.util.CommandRunner;
@@ -45,8 +47,18 @@ public class SystemStatusService {
 
     private static final Logger log = LoggerFactory.getLogger(SystemStatusService.class);
 
+    private final DiskIoSampler diskIoSampler;
+    private final ContainerUsageSampler containerUsageSampler;
+    private final NetworkSampler networkSampler;
+
+    public SystemStatusService(DiskIoSampler diskIoSampler, ContainerUsageSampler containerUsageSampler, NetworkSampler networkSampler){
+        this.diskIoSampler = diskIoSampler;
+        this.containerUsageSampler = containerUsageSampler;
+        this.networkSampler = networkSampler;
+    }
+
     public SystemStatusGto getStatus() throws Exception{
-        return new SystemStatusGto(getCpu(), getNvme(), getMemory(), getDisks(), getKernel(), getDockerContainers());
+        return new SystemStatusGto(getCpu(), getNvme(), getMemory(), getDisks(), getKernel(), getDockerContainers(), getDiskIo(), getNetwork());
     }
 
     public double getTemp() throws IOException, FileNotFoundException{
@@ -185,6 +197,14 @@ public class SystemStatusService {
         return disks;
     }
 
+    public List<DiskIoGto> getDiskIo(){
+        return diskIoSampler.getLatest();
+    }
+
+    public NetworkStatusGto getNetwork(){
+        return networkSampler.getLatest();
+    }
+
     public KernelStatusGto getKernel() throws IOException {
         String osType = Files.readString(OS_TYPE_PATH).trim();
         String version = Files.readString(OS_VERSION_PATH).trim();
@@ -209,7 +229,8 @@ public class SystemStatusService {
                     parts[1], //ID
                     parts[2], //IMAGE
                     parts[3], //STATUS
-                    parts[4]  //RUNNING_FOR
+                    parts[4], //RUNNING_FOR
+                    containerUsageSampler.usageFor(parts[1])
                 ));
             }
         }
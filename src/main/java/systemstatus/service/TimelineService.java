@@ -0,0 +1,228 @@
+package systemstatus.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import systemstatus.gto.*;
+
+/**
+ * Én tidslinje for en IP eller sesjon på tvers av logins, kommandoer, tcpip og filoverføringer.
+ * Hver tabell leses med en egen cursor sortert på (timestamp, id) synkende, og strømmene flettes
+ * med en prioritetskø, så minnebruken er konstant og første event sendes før resten er lest.
+ *
+ * Rekkefølgen er timestamp synkende, så tabell (logins først), så id synkende. Cursoren for neste side
+ * er siste sendte event som "mikrosekunder-tabell-id".
+ *
+ * Tilkoblingen brukes direkte, så spring.jdbc.template.query-timeout gjelder ikke; statement_timeout settes
+ * i transaksjonen i stedet. En side som har strømmet lenger enn max-stream-ms avsluttes tidlig med en cursor,
+ * så en klient som leser sakte ikke holder en tilkobling fra poolen. Blir klienten stående helt, avbryter
+ * Postgres transaksjonen via idle_in_transaction_session_timeout.
+ */
+@Service
+@Profile("!agent")
+public class TimelineService {
+
+    public enum Filter { IP, SESSION }
+
+    private static final int FETCH_SIZE = 64;
+
+    private static final String[] TYPES = {"login", "command", "tcpip", "file"};
+    private static final String[] ALIASES = {"l", "c", "t", "f"};
+
+    private static final String[] QUERIES = {
+        """
+        SELECT l.id, l.timestamp, l.src_ip, l.username, l.password, l.success, g.country, g.country_code, g.city
+        FROM cowrie_logins l LEFT JOIN ip_geo g ON l.src_ip = g.ip
+        WHERE l.%1$s = ? AND %2$s
+        ORDER BY l.timestamp DESC, l.id DESC
+        """,
+        """
+        SELECT c.id, c.timestamp, c.src_ip, c.input, g.country
+        FROM cowrie_commands c LEFT JOIN ip_geo g ON c.src_ip = g.ip
+        WHERE c.%1$s = ? AND %2$s
+        ORDER BY c.timestamp DESC, c.id DESC
+        """,
+        """
+        SELECT t.id, t.timestamp, t.src_ip, t.dst_ip, t.dst_port, t.event_type, t.data, t.ja4h, g.country
+        FROM cowrie_tcpip t LEFT JOIN ip_geo g ON t.src_ip = g.ip
+        WHERE t.%1$s = ? AND %2$s
+        ORDER BY t.timestamp DESC, t.id DESC
+        """,
+        """
+        SELECT f.id, f.timestamp, f.src_ip, f.event_type, f.filename, f.shasum, f.duplicate, g.country
+        FROM cowrie_file_transfers f LEFT JOIN ip_geo g ON f.src_ip = g.ip
+        WHERE f.%1$s = ? AND %2$s
+        ORDER BY f.timestamp DESC, f.id DESC
+        """
+    };
+
+    private final DataSource dataSource;
+    private final ObjectMapper objectMapper;
+
+    @Value("${honeypot.timeline.query-timeout-ms}")
+    private long queryTimeoutMs;
+
+    @Value("${honeypot.timeline.max-stream-ms}")
+    private long maxStreamMs;
+
+    // Flushes bare etter første event, ikke etter hvert
+    private final ObjectWriter eventWriter;
+
+    public record Cursor(long micros, int table, long id) {
+
+        public static Cursor parse(String value) {
+            String[] parts = value.split("-");
+            if (parts.length != 3) throw new IllegalArgumentException("ugyldig cursor: " + value);
+            Cursor cursor = new Cursor(Long.parseLong(parts[0]), Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+            if (cursor.table() < 0 || cursor.table() >= TYPES.length) throw new IllegalArgumentException("ugyldig cursor: " + value);
+            return cursor;
+        }
+
+        @Override
+        public String toString() {
+            return micros + "-" + table + "-" + id;
+        }
+    }
+
+    // Hodet på én tabells cursor
+    private static final class Head {
+        final int table;
+        final ResultSet rs;
+        long micros;
+        long id;
+
+        Head(int table, ResultSet rs) {
+            this.table = table;
+            this.rs = rs;
+        }
+
+        boolean advance() throws SQLException {
+            if (!rs.next()) return false;
+            id = rs.getLong(1);
+            micros = toMicros(rs.getTimestamp(2));
+            return true;
+        }
+    }
+
+    private static final Comparator<Head> ORDER = Comparator
+        .comparingLong((Head h) -> -h.micros)
+        .thenComparingInt(h -> h.table)
+        .thenComparingLong(h -> -h.id);
+
+    public TimelineService(DataSource dataSource, ObjectMapper objectMapper) {
+        this.dataSource = dataSource;
+        this.objectMapper = objectMapper;
+        this.eventWriter = objectMapper.writerFor(TimelineEventGto.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public void writeTimeline(Filter filter, String value, Cursor cursor, int limit, OutputStream out) throws IOException {
+        String column = filter == Filter.IP ? "src_ip" : "session_id";
+
+        try (Connection conn = dataSource.getConnection();
+             JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            // Uten autocommit bruker Postgres-driveren serverside-cursorer og henter FETCH_SIZE rader om gangen
+            conn.setAutoCommit(false);
+            conn.setReadOnly(true);
+            try (Statement st = conn.createStatement()) {
+                st.execute("SET LOCAL statement_timeout = " + queryTimeoutMs);
+                st.execute("SET LOCAL idle_in_transaction_session_timeout = " + (maxStreamMs + queryTimeoutMs));
+            }
+            long deadline = System.nanoTime() + maxStreamMs * 1_000_000;
+
+            List<PreparedStatement> statements = new ArrayList<>();
+            PriorityQueue<Head> heads = new PriorityQueue<>(ORDER);
+            try {
+                for (int table = 0; table < QUERIES.length; table++) {
+                    PreparedStatement ps = conn.prepareStatement(QUERIES[table].formatted(column, keyset(table, cursor)));
+                    statements.add(ps);
+                    ps.setFetchSize(FETCH_SIZE);
+                    ps.setString(1, value);
+                    if (cursor != null) {
+                        ps.setTimestamp(2, fromMicros(cursor.micros()));
+                        if (table == cursor.table()) ps.setLong(3, cursor.id());
+                    }
+                    Head head = new Head(table, ps.executeQuery());
+                    if (head.advance()) heads.add(head);
+                }
+
+                json.writeStartObject();
+                json.writeArrayFieldStart("events");
+                Cursor last = null;
+                int written = 0;
+                // Over tidsgrensen avsluttes siden etter siste sendte event; klienten fortsetter med cursoren
+                while (!heads.isEmpty() && written < limit && (written == 0 || System.nanoTime() - deadline < 0)) {
+                    Head head = heads.poll();
+                    eventWriter.writeValue(json, toEvent(head));
+                    written++;
+                    if (written == 1) json.flush();
+                    last = new Cursor(head.micros, head.table, head.id);
+                    if (head.advance()) heads.add(head);
+                }
+                json.writeEndArray();
+                // Cursor bare hvis det faktisk finnes flere events
+                json.writeStringField("nextCursor", heads.isEmpty() || last == null ? null : last.toString());
+                json.writeEndObject();
+            } finally {
+                for (PreparedStatement ps : statements) ps.close();
+                conn.rollback();
+            }
+        } catch (SQLException e) {
+            throw new IOException("tidslinje feilet", e);
+        }
+    }
+
+    // Se klassekommentaren for rekkefølgen denne betingelsen må følge
+    private static String keyset(int table, Cursor cursor) {
+        String alias = ALIASES[table];
+        if (cursor == null) return alias + ".timestamp IS NOT NULL";
+        if (table < cursor.table()) return alias + ".timestamp < ?";
+        if (table > cursor.table()) return alias + ".timestamp <= ?";
+        return "(" + alias + ".timestamp, " + alias + ".id) < (?, ?)";
+    }
+
+    private static TimelineEventGto toEvent(Head head) throws SQLException {
+        ResultSet rs = head.rs;
+        String ts = rs.getString(2);
+        return switch (head.table) {
+            case 0 -> new TimelineEventGto(ts, TYPES[0], new LoginAttemptGto(ts, rs.getString(3), rs.getString(4),
+                rs.getString(5), rs.getBoolean(6), rs.getString(7), rs.getString(8), rs.getString(9)), null, null, null);
+            case 1 -> new TimelineEventGto(ts, TYPES[1], null,
+                new CommandGto(ts, rs.getString(3), rs.getString(4), rs.getString(5)), null, null);
+            case 2 -> new TimelineEventGto(ts, TYPES[2], null, null, new TcpipEventGto(ts, rs.getString(3), rs.getString(4),
+                rs.getInt(5), rs.getString(6), rs.getString(7), rs.getString(8), rs.getString(9)), null);
+            default -> new TimelineEventGto(ts, TYPES[3], null, null, null, new FileTransferGto(ts, rs.getString(3),
+                rs.getString(4), rs.getString(5), rs.getString(6), rs.getBoolean(7), rs.getString(8)));
+        };
+    }
+
+    private static long toMicros(Timestamp ts) {
+        return Math.floorDiv(ts.getTime(), 1000) * 1_000_000 + ts.getNanos() / 1000;
+    }
+
+    private static Timestamp fromMicros(long micros) {
+        Timestamp ts = new Timestamp(Math.floorDiv(micros, 1_000_000) * 1000);
+        ts.setNanos(Math.floorMod(micros, 1_000_000) * 1000);
+        return ts;
+    }
+}
@@ -0,0 +1,57 @@
+package systemstatus.util;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Begrenser hvor mange kall som kan kjøre samtidig mot en ressurs, med en begrenset kø foran.
+ * Er køen full avvises kallet med en gang, og et kall som venter lenger enn køtiden gis opp.
+ */
+public final class Bulkhead {
+
+    public enum Admission { ADMITTED, QUEUE_FULL, TIMED_OUT }
+
+    private final String name;
+    private final Semaphore permits;
+    private final int maxQueue;
+    private final long queueTimeoutMs;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public Bulkhead(String name, int maxConcurrent, int maxQueue, long queueTimeoutMs) {
+        this.name = name;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxQueue = maxQueue;
+        this.queueTimeoutMs = queueTimeoutMs;
+    }
+
+    public Admission tryEnter() throws InterruptedException {
+        if (permits.tryAcquire()) return Admission.ADMITTED;
+
+        if (waiting.incrementAndGet() > maxQueue) {
+            waiting.decrementAndGet();
+            return Admission.QUEUE_FULL;
+        }
+        try {
+            return permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS) ? Admission.ADMITTED : Admission.TIMED_OUT;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    public void exit() {
+        permits.release();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int available() {
+        return permits.availablePermits();
+    }
+
+    public int waiting() {
+        return waiting.get();
+    }
+}
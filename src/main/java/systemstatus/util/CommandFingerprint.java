@@ -0,0 +1,78 @@
+package systemstatus.util;
+
+import java.util.regex.Pattern;
+
+/**
+ * Normaliserer kommandoer fra cowrie ved å maskere flyktige tokens (IP-er, URL-er, hasher, temp-stier, lange tall),
+ * slik at kommandoer som bare skiller seg på disse grupperes sammen under samme 64-bits fingeravtrykk.
+ */
+public final class CommandFingerprint {
+
+    private static final Pattern IP_PATTERN = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}(:\\d+)?");
+    private static final Pattern IP_URL_PATTERN = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}(:\\d+)?/.*");
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-fA-F]{16,}");
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("\\d{4,}");
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private CommandFingerprint() {}
+
+    public static long fingerprint(String input) {
+        return hash(normalize(input));
+    }
+
+    public static String toHex(long fingerprint) {
+        return String.format("%016x", fingerprint);
+    }
+
+    public static String normalize(String input) {
+        StringBuilder out = new StringBuilder(input.length());
+        StringBuilder token = new StringBuilder();
+
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (Character.isWhitespace(c)) {
+                flush(token, out);
+            } else if (c == ';' || c == '|' || c == '&' || c == '<' || c == '>' || c == '(' || c == ')') {
+                // Skilletegn i skallet blir egne tokens, så "cd /tmp;wget" og "cd /tmp ; wget" blir like
+                flush(token, out);
+                if (!out.isEmpty()) out.append(' ');
+                out.append(c);
+            } else {
+                token.append(c);
+            }
+        }
+        flush(token, out);
+        return out.toString();
+    }
+
+    private static void flush(StringBuilder token, StringBuilder out) {
+        if (token.isEmpty()) return;
+        if (!out.isEmpty()) out.append(' ');
+        out.append(mask(token.toString()));
+        token.setLength(0);
+    }
+
+    private static String mask(String token) {
+        if (token.contains("://") || IP_URL_PATTERN.matcher(token).matches()) return "<url>";
+        if (IP_PATTERN.matcher(token).matches()) return "<ip>";
+        if (token.startsWith("/tmp/") || token.startsWith("/var/tmp/") || token.startsWith("/dev/shm/")) return "<tmp>";
+        if (HASH_PATTERN.matcher(token).matches()) return "<hash>";
+        if (NUMBER_PATTERN.matcher(token).matches()) return "<num>";
+        return token;
+    }
+
+    // FNV-1a over tegnene i den normaliserte strengen
+    private static long hash(String normalized) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            h ^= (c & 0xFF);
+            h *= FNV_PRIME;
+            h ^= (c >>> 8);
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+}
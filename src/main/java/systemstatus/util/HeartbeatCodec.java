@@ -0,0 +1,107 @@
+package systemstatus.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Kompakt binærformat for UDP-heartbeats mellom nodene. Alle tall er big-endian.
+ * Hver pakke avsluttes med en avkortet HMAC-SHA256 over resten av pakken (delt nøkkel
+ * cluster.heartbeat.secret), så andre på nettet ikke kan forfalske status for en node.
+ */
+public final class HeartbeatCodec {
+
+    public record Heartbeat(
+        String hostName,
+        float cpuTempC,
+        float user,
+        float system,
+        float idle,
+        boolean throttled,
+        int memTotalMb,
+        int memUsedMb,
+        float diskTotalGb,
+        float diskUsedGb,
+        int containers
+    ) {}
+
+    public static final int MAX_SIZE = 512;
+
+    private static final short MAGIC = 0x4842; // "HB"
+    private static final byte VERSION = 2;
+    private static final int TAG_BYTES = 16;
+    private static final int MAX_HOSTNAME_BYTES = 255;
+
+    private HeartbeatCodec() {}
+
+    public static void encode(Heartbeat hb, ByteBuffer buf, byte[] key) {
+        int start = buf.position();
+        byte[] host = hb.hostName().getBytes(StandardCharsets.UTF_8);
+        int hostLength = Math.min(host.length, MAX_HOSTNAME_BYTES);
+
+        buf.putShort(MAGIC);
+        buf.put(VERSION);
+        buf.put((byte) hostLength);
+        buf.put(host, 0, hostLength);
+        buf.putFloat(hb.cpuTempC());
+        buf.putFloat(hb.user());
+        buf.putFloat(hb.system());
+        buf.putFloat(hb.idle());
+        buf.put((byte) (hb.throttled() ? 1 : 0));
+        buf.putInt(hb.memTotalMb());
+        buf.putInt(hb.memUsedMb());
+        buf.putFloat(hb.diskTotalGb());
+        buf.putFloat(hb.diskUsedGb());
+        buf.putShort((short) Math.min(hb.containers(), Short.MAX_VALUE));
+        buf.put(tag(key, buf, start, buf.position()));
+    }
+
+    public static Heartbeat decode(ByteBuffer buf, byte[] key) {
+        int start = buf.position();
+        int end = buf.limit() - TAG_BYTES;
+        if (end <= start) throw new IllegalArgumentException("avkortet heartbeat");
+
+        byte[] expected = tag(key, buf, start, end);
+        byte[] actual = new byte[TAG_BYTES];
+        buf.get(end, actual);
+        if (!MessageDigest.isEqual(expected, actual)) throw new IllegalArgumentException("ugyldig HMAC");
+        buf.limit(end);
+
+        try {
+            if (buf.getShort() != MAGIC) throw new IllegalArgumentException("ukjent magic");
+            byte version = buf.get();
+            if (version != VERSION) throw new IllegalArgumentException("ukjent versjon " + version);
+
+            byte[] host = new byte[buf.get() & 0xFF];
+            buf.get(host);
+
+            return new Heartbeat(
+                new String(host, StandardCharsets.UTF_8),
+                buf.getFloat(), buf.getFloat(), buf.getFloat(), buf.getFloat(),
+                buf.get() != 0,
+                buf.getInt(), buf.getInt(),
+                buf.getFloat(), buf.getFloat(),
+                buf.getShort());
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IllegalArgumentException("avkortet heartbeat", e);
+        }
+    }
+
+    private static byte[] tag(byte[] key, ByteBuffer buf, int from, int to) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            mac.update(buf.slice(from, to - from));
+            byte[] full = mac.doFinal();
+            byte[] truncated = new byte[TAG_BYTES];
+            System.arraycopy(full, 0, truncated, 0, TAG_BYTES);
+            return truncated;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
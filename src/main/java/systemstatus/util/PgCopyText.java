@@ -0,0 +1,32 @@
+package systemstatus.util;
+
+/**
+ * Bygger rader i tekstformatet til Postgres' COPY FROM STDIN: tab mellom kolonner, \N for null.
+ */
+public final class PgCopyText {
+
+    private PgCopyText() {}
+
+    public static void row(StringBuilder sb, String... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append('\t');
+            String v = values[i];
+            if (v == null) {
+                sb.append("\\N");
+                continue;
+            }
+            for (int j = 0; j < v.length(); j++) {
+                char c = v.charAt(j);
+                switch (c) {
+                    case '\\' -> sb.append("\\\\");
+                    case '\t' -> sb.append("\\t");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    case '\0' -> { }
+                    default -> sb.append(c);
+                }
+            }
+        }
+        sb.append('\n');
+    }
+}
@@ -0,0 +1,104 @@
+package systemstatus.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Enkel tokenizer for tekstfiler under /proc. Filen leses inn i et gjenbrukt byte-buffer og tall parses
+ * direkte fra bytene, så en sampler som leser de samme filene hvert intervall allokerer nesten ingenting.
+ * Ikke trådsikker: hver sampler bruker sin egen instans.
+ */
+public final class ProcReader {
+
+    private byte[] buf = new byte[16 * 1024];
+    private int len;
+    private int pos;
+
+    // /proc-filer rapporterer størrelse 0, så vi leser til EOF og utvider bufferet ved behov
+    public ProcReader load(Path path) throws IOException {
+        len = 0;
+        pos = 0;
+        try (InputStream in = Files.newInputStream(path)) {
+            int n;
+            while ((n = in.read(buf, len, buf.length - len)) > 0) {
+                len += n;
+                if (len == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+        }
+        return this;
+    }
+
+    public boolean hasMore() {
+        return pos < len;
+    }
+
+    /**
+     * Hopper til starten av neste linje. Returnerer false når filen er slutt.
+     */
+    public boolean nextLine() {
+        while (pos < len && buf[pos] != '\n') pos++;
+        if (pos < len) pos++;
+        return pos < len;
+    }
+
+    public void skipSpaces() {
+        while (pos < len && (buf[pos] == ' ' || buf[pos] == '\t')) pos++;
+    }
+
+    public void skipToken() {
+        skipSpaces();
+        while (pos < len && !isSeparator(buf[pos])) pos++;
+    }
+
+    /**
+     * Sjekker om linjen (etter mellomrom) starter med prefikset, uten å flytte posisjonen.
+     */
+    public boolean startsWith(String prefix) {
+        skipSpaces();
+        if (pos + prefix.length() > len) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buf[pos + i] != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Leser et navn fram til {@code terminator} og hopper over terminatoren.
+     */
+    public String nextName(char terminator) {
+        skipSpaces();
+        int start = pos;
+        while (pos < len && buf[pos] != terminator && buf[pos] != '\n') pos++;
+        String name = new String(buf, start, pos - start, java.nio.charset.StandardCharsets.US_ASCII).trim();
+        if (pos < len && buf[pos] == terminator) pos++;
+        return name;
+    }
+
+    public long nextLong() {
+        skipSpaces();
+        long value = 0;
+        while (pos < len && buf[pos] >= '0' && buf[pos] <= '9') {
+            value = value * 10 + (buf[pos++] - '0');
+        }
+        return value;
+    }
+
+    public int nextHex() {
+        skipSpaces();
+        int value = 0;
+        while (pos < len) {
+            int digit = Character.digit(buf[pos], 16);
+            if (digit < 0) break;
+            value = value * 16 + digit;
+            pos++;
+        }
+        return value;
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == '\t' || b == '\n';
+    }
+}
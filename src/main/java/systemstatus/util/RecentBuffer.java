@@ -0,0 +1,36 @@
+package systemstatus.util;
+
+import java.util.List;
+
+/**
+ * Holder de siste {@code capacity} elementene, nyeste først. Skriving (én skriver) bygger et nytt
+ * uforanderlig øyeblikksbilde per batch, så lesere får en delliste av bildet uten kopiering eller låsing.
+ */
+public final class RecentBuffer<T> {
+
+    private final int capacity;
+    private volatile List<T> snapshot;
+
+    public RecentBuffer(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    public void replace(List<T> newestFirst) {
+        snapshot = List.copyOf(newestFirst.subList(0, Math.min(capacity, newestFirst.size())));
+    }
+
+    /** De nyeste {@code limit} elementene, eller null hvis bufferet ikke kan svare (ikke lastet, eller limit for stor). */
+    public List<T> latest(int limit) {
+        List<T> current = snapshot;
+        if (current == null || limit > capacity) return null;
+        return current.subList(0, Math.min(limit, current.size()));
+    }
+}
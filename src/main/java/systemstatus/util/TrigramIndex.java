@@ -0,0 +1,115 @@
+package systemstatus.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Invertert trigram-indeks over rad-id-er. Hver postingliste er stigende id-er lagret som varint-kodede
+ * differanser i en byte-array, så indeksen bare kan bygges ved å legge til stadig høyere id-er.
+ * Trigrammene er uten hensyn til store/små bokstaver. Klassen er ikke trådsikker.
+ */
+public final class TrigramIndex {
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private int lastId = -1;
+
+    private static final class Postings {
+        byte[] data = new byte[8];
+        int size;
+        int last = -1;
+        int count;
+
+        void add(int id) {
+            if (id == last) return;
+            int delta = last < 0 ? id : id - last;
+            if (size + 5 > data.length) data = Arrays.copyOf(data, data.length * 2);
+            while ((delta & ~0x7F) != 0) {
+                data[size++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            data[size++] = (byte) delta;
+            last = id;
+            count++;
+        }
+
+        int[] decode() {
+            int[] ids = new int[count];
+            int pos = 0, id = 0;
+            for (int n = 0; n < count; n++) {
+                int delta = 0, shift = 0;
+                byte b;
+                do {
+                    b = data[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                id = n == 0 ? delta : id + delta;
+                ids[n] = id;
+            }
+            return ids;
+        }
+    }
+
+    public int lastId() {
+        return lastId;
+    }
+
+    public int trigramCount() {
+        return postings.size();
+    }
+
+    /**
+     * Legger til tekst for en rad. Id-ene må komme i stigende rekkefølge, men samme id kan brukes flere ganger.
+     */
+    public void add(int id, String text) {
+        if (id < lastId) throw new IllegalArgumentException("id " + id + " er lavere enn " + lastId);
+        lastId = id;
+        if (text == null) return;
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            postings.computeIfAbsent(trigram(text, i), k -> new Postings()).add(id);
+        }
+    }
+
+    /**
+     * Id-er som inneholder alle trigrammene i søket, sortert stigende. Dette er kandidater, ikke treff,
+     * og må verifiseres mot selve teksten.
+     */
+    public int[] candidates(String query) {
+        if (query.length() < 3) throw new IllegalArgumentException("søket må ha minst tre tegn");
+
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + 3 <= query.length(); i++) {
+            Postings p = postings.get(trigram(query, i));
+            if (p == null) return new int[0];
+            lists.add(p);
+        }
+        lists.sort(Comparator.comparingInt(p -> p.count));
+
+        int[] result = lists.get(0).decode();
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i).decode());
+        }
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else { out[n++] = a[i]; i++; j++; }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) Character.toLowerCase(s.charAt(i)) << 32)
+            | ((long) Character.toLowerCase(s.charAt(i + 1)) << 16)
+            | Character.toLowerCase(s.charAt(i + 2));
+    }
+}
@@ -0,0 +1,43 @@
+-- Kjøres ved oppstart (spring.sql.init). Alle setninger må tåle å kjøres flere ganger.
+
+ALTER TABLE cowrie_commands ADD COLUMN IF NOT EXISTS fingerprint BIGINT;
+CREATE INDEX IF NOT EXISTS cowrie_commands_fingerprint_idx ON cowrie_commands (fingerprint);
+CREATE INDEX IF NOT EXISTS cowrie_commands_unfingerprinted_idx ON cowrie_commands (id) WHERE fingerprint IS NULL;
+
+-- Kolonner for ingest fra cowrie.json (CowrieIngestService). event_id brukes til deduplisering.
+ALTER TABLE cowrie_sessions ADD COLUMN IF NOT EXISTS session_id TEXT;
+CREATE UNIQUE INDEX IF NOT EXISTS cowrie_sessions_session_id_idx ON cowrie_sessions (session_id);
+
+ALTER TABLE cowrie_logins ADD COLUMN IF NOT EXISTS session_id TEXT;
+ALTER TABLE cowrie_logins ADD COLUMN IF NOT EXISTS event_id TEXT;
+CREATE UNIQUE INDEX IF NOT EXISTS cowrie_logins_event_id_idx ON cowrie_logins (event_id);
+
+ALTER TABLE cowrie_commands ADD COLUMN IF NOT EXISTS session_id TEXT;
+ALTER TABLE cowrie_commands ADD COLUMN IF NOT EXISTS event_id TEXT;
+CREATE UNIQUE INDEX IF NOT EXISTS cowrie_commands_event_id_idx ON cowrie_commands (event_id);
+
+ALTER TABLE cowrie_tcpip ADD COLUMN IF NOT EXISTS session_id TEXT;
+ALTER TABLE cowrie_tcpip ADD COLUMN IF NOT EXISTS event_id TEXT;
+CREATE UNIQUE INDEX IF NOT EXISTS cowrie_tcpip_event_id_idx ON cowrie_tcpip (event_id);
+
+ALTER TABLE cowrie_file_transfers ADD COLUMN IF NOT EXISTS session_id TEXT;
+ALTER TABLE cowrie_file_transfers ADD COLUMN IF NOT EXISTS event_id TEXT;
+CREATE UNIQUE INDEX IF NOT EXISTS cowrie_file_transfers_event_id_idx ON cowrie_file_transfers (event_id);
+
+CREATE TABLE IF NOT EXISTS cowrie_ingest_offsets (
+    path TEXT PRIMARY KEY,
+    file_key TEXT,
+    position BIGINT NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+-- Tidslinjer per IP og per sesjon (TimelineService) leser (timestamp, id) baklengs for én IP eller sesjon,
+-- så første event kan hentes uten å sortere alle radene.
+CREATE INDEX IF NOT EXISTS cowrie_logins_ip_timeline_idx ON cowrie_logins (src_ip, timestamp, id);
+CREATE INDEX IF NOT EXISTS cowrie_logins_session_timeline_idx ON cowrie_logins (session_id, timestamp, id);
+CREATE INDEX IF NOT EXISTS cowrie_commands_ip_timeline_idx ON cowrie_commands (src_ip, timestamp, id);
+CREATE INDEX IF NOT EXISTS cowrie_commands_session_timeline_idx ON cowrie_commands (session_id, timestamp, id);
+CREATE INDEX IF NOT EXISTS cowrie_tcpip_ip_timeline_idx ON cowrie_tcpip (src_ip, timestamp, id);
+CREATE INDEX IF NOT EXISTS cowrie_tcpip_session_timeline_idx ON cowrie_tcpip (session_id, timestamp, id);
+CREATE INDEX IF NOT EXISTS cowrie_file_transfers_ip_timeline_idx ON cowrie_file_transfers (src_ip, timestamp, id);
+CREATE INDEX IF NOT EXISTS cowrie_file_transfers_session_timeline_idx ON cowrie_file_transfers (session_id, timestamp, id);
@@ -0,0 +1,111 @@
+package systemstatus.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import systemstatus.gto.SearchResultGto;
+import systemstatus.service.DashboardSnapshotService;
+import systemstatus.service.SearchIndexService;
+
+class HoneypotControllerTest {
+
+    private static final byte[] JSON = "{\"summary\":{}}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] GZIP = {0x1f, (byte) 0x8b, 8, 0};
+
+    private final MockMvc dashboard = MockMvcBuilders.standaloneSetup(new HoneypotController(
+        null, null, null, null, null, new DashboardSnapshotService(null, null) {
+            @Override
+            public Snapshot getSnapshot() {
+                return new Snapshot("\"abc\"", "\"abc-gz\"", JSON, GZIP);
+            }
+        })).build();
+
+    @Test
+    void dashboardIfNoneMatchUsesWeakComparisonListsAndStar() throws Exception {
+        for (String ifNoneMatch : List.of("\"abc\"", "W/\"abc\"", "\"old\", W/\"abc\"", "\"old\",\"abc\"", "*")) {
+            dashboard.perform(get("/honeypot/dashboard").header("If-None-Match", ifNoneMatch))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"abc\""));
+        }
+        for (String ifNoneMatch : List.of("\"old\"", "\"ab\"", "\"abc-gz\"", "abc")) {
+            dashboard.perform(get("/honeypot/dashboard").header("If-None-Match", ifNoneMatch))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(JSON));
+        }
+    }
+
+    @Test
+    void gzipRepresentationHasItsOwnEtag() throws Exception {
+        dashboard.perform(get("/honeypot/dashboard").header("Accept-Encoding", "gzip, deflate, br"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Encoding", "gzip"))
+            .andExpect(header().string("ETag", "\"abc-gz\""))
+            .andExpect(header().string("Vary", "Accept-Encoding"))
+            .andExpect(content().bytes(GZIP));
+
+        // Taggen for den ukomprimerte versjonen gjelder ikke for gzip-bytene, og omvendt
+        dashboard.perform(get("/honeypot/dashboard").header("Accept-Encoding", "gzip").header("If-None-Match", "\"abc\""))
+            .andExpect(status().isOk());
+        dashboard.perform(get("/honeypot/dashboard").header("Accept-Encoding", "gzip").header("If-None-Match", "\"abc-gz\""))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string("ETag", "\"abc-gz\""));
+    }
+
+    @Test
+    void gzipRefusedWithQZero() throws Exception {
+        for (String acceptEncoding : List.of("gzip;q=0", "gzip; q=0.0, identity", "*;q=1, gzip;q=0", "br")) {
+            dashboard.perform(get("/honeypot/dashboard").header("Accept-Encoding", acceptEncoding))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(header().string("ETag", "\"abc\""))
+                .andExpect(content().bytes(JSON));
+        }
+        dashboard.perform(get("/honeypot/dashboard").header("Accept-Encoding", "*"))
+            .andExpect(header().string("Content-Encoding", "gzip"));
+    }
+
+    @Test
+    void searchWithZeroLimitReturnsEmptyPage() throws Exception {
+        // Tom indeks: ingen kandidater, så databasen spørres aldri
+        MockMvc mvc = mvc(new SearchIndexService(null));
+
+        mvc.perform(get("/honeypot/search").param("q", "wget").param("limit", "0"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.commands").isEmpty())
+            .andExpect(jsonPath("$.nextCommandCursor").doesNotExist());
+    }
+
+    @Test
+    void searchLimitIsClamped() throws Exception {
+        List<Integer> limits = new ArrayList<>();
+        MockMvc mvc = mvc(new SearchIndexService(null) {
+            @Override
+            public SearchResultGto search(String query, int limit, Long beforeCommand, Long beforeLogin) {
+                limits.add(limit);
+                return new SearchResultGto(List.of(), List.of(), null, null);
+            }
+        });
+
+        for (String limit : List.of("-5", "0", "20", "5000")) {
+            mvc.perform(get("/honeypot/search").param("q", "wget").param("limit", limit))
+                .andExpect(status().isOk());
+        }
+        assertEquals(List.of(1, 1, 20, 100), limits);
+    }
+
+    private static MockMvc mvc(SearchIndexService searchIndex) {
+        return MockMvcBuilders.standaloneSetup(new HoneypotController(null, null, searchIndex, null, null, null)).build();
+    }
+}
@@ -0,0 +1,113 @@
+package systemstatus.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import systemstatus.service.SchemaInitializer;
+import systemstatus.util.CommandFingerprint;
+
+/**
+ * Kjører CowrieCopyWriter mot en ekte Postgres. Hoppes over uten TEST_DB_URL (f.eks.
+ * jdbc:postgresql://localhost:5432/homelab_test); TEST_DB_USER og TEST_DB_PASS brukes om de er satt.
+ * Alt skjer i et eget skjema som slettes etterpå.
+ */
+class CowrieCopyWriterDbTest {
+
+    private static final String PATH = "/var/log/cowrie/cowrie.json";
+
+    private String url;
+    private String schema;
+    private JdbcTemplate jdbc;
+    private DriverManagerDataSource dataSource;
+
+    @BeforeEach
+    void createSchema() throws Exception {
+        url = System.getenv("TEST_DB_URL");
+        Assumptions.assumeTrue(url != null && !url.isBlank(), "TEST_DB_URL er ikke satt");
+        schema = "ingest_test_" + Long.toHexString(System.nanoTime());
+        try (Connection conn = connect(); Statement st = conn.createStatement()) {
+            st.execute("CREATE SCHEMA " + schema);
+        }
+
+        dataSource = new DriverManagerDataSource(url + (url.contains("?") ? "&" : "?") + "currentSchema=" + schema,
+            System.getenv("TEST_DB_USER"), System.getenv("TEST_DB_PASS"));
+        new ResourceDatabasePopulator(new ClassPathResource("cowrie-schema.sql")).execute(dataSource);
+        jdbc = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void dropSchema() throws Exception {
+        if (schema == null) return;
+        try (Connection conn = connect(); Statement st = conn.createStatement()) {
+            st.execute("DROP SCHEMA " + schema + " CASCADE");
+        }
+    }
+
+    @Test
+    void schemaSqlAppliesOnCowrieTablesAndReportsReady() {
+        SchemaInitializer initializer = new SchemaInitializer(dataSource);
+        initializer.afterPropertiesSet();
+        assertTrue(initializer.isReady());
+    }
+
+    @Test
+    void replayedBatchIsDeduplicatedAndOffsetIsStored() throws Exception {
+        new SchemaInitializer(dataSource).afterPropertiesSet();
+        CowrieCopyWriter writer = new CowrieCopyWriter(dataSource, PATH);
+
+        List<CowrieEvent> batch = List.of(
+            event("cowrie.session.connect", null, 100),
+            event("cowrie.login.failed", null, 200),
+            event("cowrie.command.input", "uname  -a", 300),
+            event("cowrie.direct-tcpip.request", null, 400),
+            event("cowrie.session.file_download", null, 500),
+            event("cowrie.session.closed", null, 600));
+        writer.write(batch);
+        // Samme linjer lest på nytt etter en restart skal ikke gi nye rader
+        writer.write(batch);
+
+        assertEquals(1, count("cowrie_sessions"));
+        assertEquals(1, count("cowrie_logins"));
+        assertEquals(1, count("cowrie_commands"));
+        assertEquals(1, count("cowrie_tcpip"));
+        assertEquals(1, count("cowrie_file_transfers"));
+
+        assertEquals(CommandFingerprint.fingerprint("uname  -a"),
+            jdbc.queryForObject("SELECT fingerprint FROM cowrie_commands", Long.class));
+        assertTrue(jdbc.queryForObject("SELECT ended_at IS NOT NULL FROM cowrie_sessions", Boolean.class));
+
+        Map<String, Object> offset = jdbc.queryForMap(
+            "SELECT file_key, position FROM cowrie_ingest_offsets WHERE path = ?", PATH);
+        assertEquals("key-1", offset.get("file_key"));
+        assertEquals(600L, offset.get("position"));
+    }
+
+    private long count(String table) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    private Connection connect() throws Exception {
+        return DriverManager.getConnection(url, System.getenv("TEST_DB_USER"), System.getenv("TEST_DB_PASS"));
+    }
+
+    private static CowrieEvent event(String eventId, String input, long offset) {
+        return new CowrieEvent(eventId, "abc123", "2026-10-18T12:00:0" + offset / 100 + ".000000Z", "192.0.2.1",
+            "root", "123456", input, "198.51.100.7", 443, null, null, "/tmp/x.sh", "deadbeef", false,
+            "key-1", offset);
+    }
+}
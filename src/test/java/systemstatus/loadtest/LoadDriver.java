@@ -0,0 +1,281 @@
+package systemstatus.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import systemstatus.util.CommandRunner;
+
+/**
+ * Lukket-sløyfe lastgenerator mot alle endepunktene i API-et. Hver arbeider velger rute etter vekt,
+ * sender forespørselen og venter på svaret før neste. Rapporterer gjennomstrømning og p50/p99/p999 per rute,
+ * og skriver resultatet som JSON merket med commit, slik at kjøringer kan sammenlignes.
+ *
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=systemstatus.loadtest.LoadDriver \
+ *   -Dexec.args="--base=http://127.0.0.1:8081 --concurrency=32 --duration=60 --warmup=10"
+ * </pre>
+ *
+ * Argumenter: --base, --concurrency, --duration og --warmup (sekunder), --seed, --out (katalog for JSON),
+ * --label (standard er git-commit), --mix=rute=vekt,... for å overstyre vektene (0 slår av en rute).
+ * API-et viser ikke sesjons-id-er, så session-timeline trenger --url (og DB_USER/DB_PASS eller --user/--password)
+ * for å hente sesjoner til de mest aktive IP-ene; uten --url slås den ruten av.
+ */
+public final class LoadDriver {
+
+    private record Route(String name, String path, int weight) {}
+
+    private record Result(String route, long requests, long errors, double throughput,
+                          double p50Ms, double p99Ms, double p999Ms, double maxMs, long avgBytes) {}
+
+    private static final class Recorder {
+        long[] latencies = new long[1024];
+        int count;
+        long errors;
+        long bytes;
+
+        void record(long nanos, long size) {
+            if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = nanos;
+            bytes += size;
+        }
+
+        void merge(Recorder other) {
+            for (int i = 0; i < other.count; i++) record(other.latencies[i], 0);
+            bytes += other.bytes;
+            errors += other.errors;
+        }
+    }
+
+    private static final List<Route> DEFAULT_ROUTES = List.of(
+        new Route("dashboard", "/honeypot/dashboard", 5),
+        new Route("summary", "/honeypot/summary", 5),
+        new Route("active-sessions", "/honeypot/active-sessions", 3),
+        new Route("recent-logins", "/honeypot/recent-logins?limit=20", 5),
+        new Route("recent-commands", "/honeypot/recent-commands?limit=20", 5),
+        new Route("recent-tcpip", "/honeypot/recent-tcpip?limit=20", 3),
+        new Route("recent-files", "/honeypot/recent-files?limit=20", 3),
+        new Route("top-ips", "/honeypot/top-ips?limit=10", 2),
+        new Route("top-credentials", "/honeypot/top-credentials?limit=10", 2),
+        new Route("top-commands", "/honeypot/top-commands?limit=10", 2),
+        new Route("activity", "/honeypot/activity?hours=48", 2),
+        new Route("geo", "/honeypot/geo", 1),
+        new Route("geo-cells", "/honeypot/geo?zoom=3", 3),
+        new Route("ip-detail", "/honeypot/ip/{ip}", 5),
+        new Route("ip-timeline", "/honeypot/ip/{ip}/timeline?limit=100", 2),
+        new Route("session-timeline", "/honeypot/session/{session}/timeline?limit=100", 2),
+        new Route("clusters", "/honeypot/clusters", 1),
+        new Route("destinations", "/honeypot/destinations", 1),
+        new Route("malware", "/honeypot/malware", 1),
+        new Route("search", "/honeypot/search?q=wget", 2),
+        new Route("status", "/status", 1),
+        new Route("status-since", "/status?since=0", 1),
+        new Route("cpu", "/cpu", 1),
+        new Route("nvme", "/nvme", 1),
+        new Route("memory", "/memory", 2),
+        new Route("disks", "/disks", 2),
+        new Route("diskio", "/diskio", 2),
+        new Route("network", "/network", 2),
+        new Route("kernel", "/kernel", 1),
+        new Route("docker", "/docker", 1),
+        new Route("cluster", "/cluster/status", 1));
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    public static void main(String[] argv) throws Exception {
+        Args args = new Args(argv);
+        String base = args.get("base", "http://127.0.0.1:8081");
+        int concurrency = args.getInt("concurrency", 16);
+        Duration duration = Duration.ofSeconds(args.getLong("duration", 60));
+        Duration warmup = Duration.ofSeconds(args.getLong("warmup", 10));
+        long seed = args.getLong("seed", 42);
+        Path out = Path.of(args.get("out", "target/loadtest"));
+        String label = args.get("label", gitCommit());
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5)).build();
+        List<String> ips = hotIps(client, base);
+        List<String> sessions = hotSessions(args, ips);
+        String mix = args.get("mix", "");
+        if (sessions.isEmpty()) {
+            System.err.println("ingen sesjons-id-er (mangler --url?), session-timeline slås av");
+            mix = "session-timeline=0" + (mix.isEmpty() ? "" : "," + mix);
+        }
+        List<Route> routes = applyMix(DEFAULT_ROUTES, mix);
+
+        int[] cumulative = new int[routes.size()];
+        int totalWeight = 0;
+        for (int i = 0; i < routes.size(); i++) {
+            totalWeight += routes.get(i).weight();
+            cumulative[i] = totalWeight;
+        }
+
+        System.out.printf("%s: %d arbeidere, %d s oppvarming + %d s måling mot %s%n",
+            label, concurrency, warmup.toSeconds(), duration.toSeconds(), base);
+
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        final int weightSum = totalWeight;
+
+        List<Future<Recorder[]>> workers = new ArrayList<>();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < concurrency; w++) {
+                SplittableRandom random = new SplittableRandom(seed + w);
+                workers.add(pool.submit(() -> runWorker(client, base, routes, cumulative, weightSum, ips, sessions, random, measureFrom, end)));
+            }
+
+            Recorder[] merged = new Recorder[routes.size()];
+            for (int i = 0; i < merged.length; i++) merged[i] = new Recorder();
+            for (Future<Recorder[]> worker : workers) {
+                Recorder[] recorders = worker.get();
+                for (int i = 0; i < recorders.length; i++) merged[i].merge(recorders[i]);
+            }
+            report(routes, merged, duration, label, base, concurrency, out);
+        }
+    }
+
+    private static Recorder[] runWorker(HttpClient client, String base, List<Route> routes, int[] cumulative, int totalWeight,
+                                        List<String> ips, List<String> sessions, SplittableRandom random,
+                                        long measureFrom, long end) {
+        Recorder[] recorders = new Recorder[routes.size()];
+        for (int i = 0; i < recorders.length; i++) recorders[i] = new Recorder();
+
+        while (System.nanoTime() < end) {
+            int pick = Arrays.binarySearch(cumulative, random.nextInt(totalWeight) + 1);
+            int index = pick >= 0 ? pick : -pick - 1;
+            String path = routes.get(index).path().replace("{ip}", ips.get(random.nextInt(ips.size())));
+            if (path.contains("{session}")) path = path.replace("{session}", sessions.get(random.nextInt(sessions.size())));
+
+            HttpRequest req = HttpRequest.newBuilder(URI.create(base + path)).timeout(Duration.ofSeconds(30)).GET().build();
+            long start = System.nanoTime();
+            try {
+                HttpResponse<byte[]> res = client.send(req, HttpResponse.BodyHandlers.ofByteArray());
+                long elapsed = System.nanoTime() - start;
+                if (start < measureFrom) continue;
+                if (res.statusCode() >= 400) recorders[index].errors++;
+                else recorders[index].record(elapsed, res.body().length);
+            } catch (Exception e) {
+                if (start >= measureFrom) recorders[index].errors++;
+            }
+        }
+        return recorders;
+    }
+
+    private static void report(List<Route> routes, Recorder[] recorders, Duration duration, String label, String base,
+                               int concurrency, Path out) throws Exception {
+        List<Result> results = new ArrayList<>();
+        System.out.printf("%-18s %9s %7s %9s %9s %9s %9s %9s %10s%n",
+            "rute", "antall", "feil", "req/s", "p50 ms", "p99 ms", "p999 ms", "maks ms", "bytes");
+
+        for (int i = 0; i < routes.size(); i++) {
+            Recorder r = recorders[i];
+            long[] sorted = Arrays.copyOf(r.latencies, r.count);
+            Arrays.sort(sorted);
+            Result result = new Result(routes.get(i).name(), r.count, r.errors, r.count / (double) duration.toSeconds(),
+                percentileMs(sorted, 0.50), percentileMs(sorted, 0.99), percentileMs(sorted, 0.999),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6, r.count == 0 ? 0 : r.bytes / r.count);
+            results.add(result);
+            System.out.printf("%-18s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %10d%n", result.route(), result.requests(),
+                result.errors(), result.throughput(), result.p50Ms(), result.p99Ms(), result.p999Ms(), result.maxMs(),
+                result.avgBytes());
+        }
+
+        Map<String, Object> doc = new LinkedHashMap<>();
+        doc.put("label", label);
+        doc.put("startedAt", Instant.now().minus(duration).toString());
+        doc.put("base", base);
+        doc.put("concurrency", concurrency);
+        doc.put("durationSeconds", duration.toSeconds());
+        doc.put("routes", results);
+
+        Files.createDirectories(out);
+        Path file = out.resolve(label + ".json");
+        MAPPER.writeValue(file.toFile(), doc);
+        System.out.println("Skrev " + file);
+    }
+
+    private static double percentileMs(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    private static List<Route> applyMix(List<Route> routes, String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (Route route : routes) weights.put(route.name(), route.weight());
+        for (String part : mix.split(",")) {
+            if (part.isBlank()) continue;
+            String[] kv = part.split("=");
+            if (!weights.containsKey(kv[0])) throw new IllegalArgumentException("ukjent rute i --mix: " + kv[0]);
+            weights.put(kv[0], Integer.parseInt(kv[1]));
+        }
+        return routes.stream()
+            .filter(r -> weights.get(r.name()) > 0)
+            .map(r -> new Route(r.name(), r.path(), weights.get(r.name())))
+            .toList();
+    }
+
+    // De mest aktive IP-ene, slik at ip-detail treffer de tunge tilfellene
+    private static List<String> hotIps(HttpClient client, String base) {
+        try {
+            HttpRequest req = HttpRequest.newBuilder(URI.create(base + "/honeypot/top-ips?limit=50")).GET().build();
+            JsonNode node = MAPPER.readTree(client.send(req, HttpResponse.BodyHandlers.ofString()).body());
+            List<String> ips = new ArrayList<>();
+            node.forEach(n -> { if (n.hasNonNull("ip")) ips.add(n.get("ip").asText()); });
+            if (!ips.isEmpty()) return ips;
+        } catch (Exception e) {
+            System.err.println("fant ingen topp-IP-er: " + e.getMessage());
+        }
+        return List.of("127.0.0.1");
+    }
+
+    // Sesjoner fra de samme IP-ene, så session-timeline også treffer de tunge tilfellene
+    private static List<String> hotSessions(Args args, List<String> ips) {
+        if (!args.has("url")) return List.of();
+        try (Connection conn = DriverManager.getConnection(args.get("url", null), args.get("user", System.getenv("DB_USER")),
+                args.get("password", System.getenv("DB_PASS")));
+             PreparedStatement ps = conn.prepareStatement(
+                 "SELECT session_id FROM cowrie_sessions WHERE src_ip = ANY(?) AND session_id IS NOT NULL LIMIT 500")) {
+            ps.setArray(1, conn.createArrayOf("text", ips.toArray()));
+            List<String> sessions = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) sessions.add(rs.getString(1));
+            }
+            return sessions;
+        } catch (Exception e) {
+            System.err.println("kunne ikke hente sesjoner: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static String gitCommit() {
+        try {
+            var res = CommandRunner.run(List.of("git", "describe", "--always", "--dirty"), Duration.ofSeconds(5));
+            if (res.exitCode() == 0 && !res.stdout().isBlank()) return res.stdout().strip();
+        } catch (Exception ignored) {
+        }
+        return "run-" + System.currentTimeMillis();
+    }
+}
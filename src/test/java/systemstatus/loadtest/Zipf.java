@@ -0,0 +1,27 @@
+package systemstatus.loadtest;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Trekker indekser 0..n-1 med Zipf-fordeling, slik at noen få verdier (IP-er, passord) dominerer.
+ */
+final class Zipf {
+
+    private final double[] cumulative;
+
+    Zipf(int n, double exponent) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; i++) cumulative[i] /= sum;
+    }
+
+    int next(SplittableRandom random) {
+        int pos = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(pos >= 0 ? pos : -pos - 1, cumulative.length - 1);
+    }
+}
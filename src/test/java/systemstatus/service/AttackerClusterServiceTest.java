@@ -0,0 +1,59 @@
+package systemstatus.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import systemstatus.gto.AttackerClusterGto;
+
+class AttackerClusterServiceTest {
+
+    @Test
+    void botnetWithIdenticalSignaturesClustersInLinearTime() {
+        List<Object[]> logins = new ArrayList<>();
+        long id = 0;
+        // 5000 IP-er som prøver nøyaktig samme liste havner i samme bøtte i alle bånd
+        for (int i = 0; i < 5_000; i++) {
+            String ip = "10." + (i >> 16) + "." + ((i >> 8) & 255) + "." + (i & 255);
+            for (String password : List.of("123456", "admin", "raspberry")) {
+                logins.add(new Object[]{++id, ip, "root", password});
+            }
+        }
+        // To IP-er med en helt annen liste skal ikke dras inn
+        for (String ip : List.of("192.0.2.1", "192.0.2.2")) {
+            for (String password : List.of("qwerty", "letmein", "dragon", "monkey")) {
+                logins.add(new Object[]{++id, ip, "oracle", password});
+            }
+        }
+
+        AttackerClusterService service = new AttackerClusterService(jdbcReturning(logins));
+        assertTimeout(Duration.ofSeconds(2), service::refresh);
+
+        List<AttackerClusterGto> clusters = service.getClusters(10);
+        assertEquals(2, clusters.size());
+        assertEquals(5_000, clusters.get(0).size());
+        assertEquals(2, clusters.get(1).size());
+        assertEquals("192.0.2.1", clusters.get(1).id());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static JdbcTemplate jdbcReturning(List<Object[]> logins) {
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        when(jdbc.query(startsWith("SELECT id, src_ip, username"), any(RowMapper.class), any(), any()))
+            .thenReturn((List) logins, List.of());
+        when(jdbc.query(startsWith("SELECT id, src_ip, input"), any(RowMapper.class), any(), any()))
+            .thenReturn(List.of());
+        return jdbc;
+    }
+}
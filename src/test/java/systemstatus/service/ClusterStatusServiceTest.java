@@ -0,0 +1,107 @@
+package systemstatus.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongFunction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import systemstatus.gto.*;
+
+class ClusterStatusServiceTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<Long> requestedSince = new ArrayList<>();
+    private HttpServer server;
+    private volatile LongFunction<StatusDeltaGto> responder;
+
+    @AfterEach
+    void stop() {
+        if (server != null) server.stop(0);
+    }
+
+    @Test
+    void nodeRestartWithLowerVersionTriggersFullResync() throws Exception {
+        ClusterStatusService service = newService(startNode());
+
+        CpuStatusGto cpuBefore = new CpuStatusGto(40, 1, 1, 98, false);
+        MemoryStatusGto memory = new MemoryStatusGto(8000, 1000, 0, 0);
+        responder = since -> new StatusDeltaGto(500, "a", cpuBefore, null, memory, null, null, null, null, null);
+        assertEquals(cpuBefore, remote(service).status().cpu());
+
+        // Noden har startet på nytt: ny prosess-id, lavere klokke, og svaret på since=500 er tomt
+        CpuStatusGto cpuAfter = new CpuStatusGto(55, 20, 5, 75, false);
+        responder = since -> since == 0
+            ? new StatusDeltaGto(3, "b", cpuAfter, null, memory, null, null, null, null, null)
+            : new StatusDeltaGto(3, "b", null, null, null, null, null, null, null, null);
+
+        assertEquals(cpuAfter, remote(service).status().cpu());
+        assertEquals(List.of(0L, 500L, 0L), requestedSince);
+
+        // Videre deltaer går mot den nye prosessens versjon
+        responder = since -> new StatusDeltaGto(3, "b", null, null, null, null, null, null, null, null);
+        assertEquals(cpuAfter, remote(service).status().cpu());
+        assertEquals(3L, requestedSince.get(requestedSince.size() - 1));
+    }
+
+    @Test
+    void versionGoingBackwardsWithSameInstanceAlsoResyncs() throws Exception {
+        ClusterStatusService service = newService(startNode());
+
+        CpuStatusGto cpu = new CpuStatusGto(40, 1, 1, 98, false);
+        responder = since -> new StatusDeltaGto(10, "a", cpu, null, null, null, null, null, null, null);
+        remote(service);
+
+        CpuStatusGto cpuAfter = new CpuStatusGto(60, 30, 5, 65, true);
+        responder = since -> since == 0
+            ? new StatusDeltaGto(4, "a", cpuAfter, null, null, null, null, null, null, null)
+            : new StatusDeltaGto(2, "a", null, null, null, null, null, null, null, null);
+        assertEquals(cpuAfter, remote(service).status().cpu());
+        assertEquals(List.of(0L, 10L, 0L), requestedSince);
+    }
+
+    private NodeStatusGto remote(ClusterStatusService service) {
+        // Første node er den lokale (som feiler her uten samplere), andre er testnoden
+        NodeStatusGto node = service.clusterStatus().nodes().get(1);
+        assertTrue(node.reachable());
+        return node;
+    }
+
+    private ClusterStatusService newService(String node) {
+        ClusterStatusService service = new ClusterStatusService(null, null, 2_000);
+        ReflectionTestUtils.setField(service, "nodeList", List.of(node));
+        ReflectionTestUtils.setField(service, "mode", "pull");
+        return service;
+    }
+
+    private String startNode() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/status", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            long since = Long.parseLong(query.substring(query.indexOf('=') + 1));
+            synchronized (requestedSince) {
+                requestedSince.add(since);
+            }
+            byte[] body = mapper.writeValueAsString(responder.apply(since)).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+}
@@ -0,0 +1,49 @@
+package systemstatus.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import systemstatus.gto.ContainerUsageGto;
+
+class ContainerUsageSamplerTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void brokenContainerIsSkippedAndBothDriverLayoutsAreRead() throws IOException {
+        container(root.resolve("system.slice/docker-aaaa1111.scope"), "rbytes=4096 wbytes=8192", "max");
+        container(root.resolve("system.slice/docker-bbbb2222.scope"), "rbytes=tull wbytes=1", "max");
+        container(root.resolve("docker/cccc3333"), "rbytes=1 wbytes=2", "1073741824");
+
+        ContainerUsageSampler sampler = new ContainerUsageSampler(root);
+        sampler.sample();
+
+        ContainerUsageGto systemd = sampler.usageFor("aaaa");
+        assertNotNull(systemd);
+        assertEquals(52_428_800, systemd.memoryBytes());
+        assertNull(systemd.memoryMaxBytes());
+
+        ContainerUsageGto cgroupfs = sampler.usageFor("cccc");
+        assertNotNull(cgroupfs);
+        assertEquals(1_073_741_824L, cgroupfs.memoryMaxBytes());
+
+        assertNull(sampler.usageFor("bbbb"));
+    }
+
+    private static void container(Path dir, String ioStat, String memoryMax) throws IOException {
+        Files.createDirectories(dir);
+        Files.writeString(dir.resolve("cpu.stat"), "usage_usec 123456\nuser_usec 100000\nsystem_usec 23456\n");
+        Files.writeString(dir.resolve("io.stat"), "259:0 " + ioStat + " rios=1 wios=2 dbytes=0 dios=0\n");
+        Files.writeString(dir.resolve("memory.current"), "52428800\n");
+        Files.writeString(dir.resolve("memory.max"), memoryMax + "\n");
+    }
+}
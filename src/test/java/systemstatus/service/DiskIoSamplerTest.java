@@ -0,0 +1,41 @@
+package systemstatus.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class DiskIoSamplerTest {
+
+    // Raspberry Pi med SD-kort, NVMe med LVM og et Docker-volum som bind-mount
+    private static final List<String> DISKSTATS = List.of(
+        " 179       0 mmcblk0 4174 1301 301370 2177 5312 5063 290712 10944 0 12808 13796 0 0 0 0 0 0",
+        " 179       1 mmcblk0p1 277 1126 14290 156 2 0 2 1 0 108 158 0 0 0 0 0 0",
+        " 179       2 mmcblk0p2 3855 175 284680 2007 5310 5063 290710 10942 0 12700 13636 0 0 0 0 0 0",
+        " 259       0 nvme0n1 9102 0 812344 1873 22501 0 1773240 9120 0 20216 11304 0 0 0 0 0 0",
+        " 254       0 dm-0 8990 0 811224 1900 22501 0 1773240 9600 0 20400 11500 0 0 0 0 0 0",
+        "   7       0 loop0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0 0");
+
+    private static final List<String> MOUNTINFO = List.of(
+        "22 1 179:2 / / rw,noatime shared:1 - ext4 /dev/root rw",
+        "24 22 179:1 / /boot/firmware rw,relatime shared:5 - vfat /dev/mmcblk0p1 rw,fmask=0022",
+        "30 22 254:0 / /srv/data rw,relatime shared:9 - ext4 /dev/mapper/vg0-data rw",
+        "31 22 254:0 / /srv/backup\\040copy rw,relatime shared:9 - ext4 /dev/mapper/vg0-data rw",
+        "88 30 254:0 /docker/volumes/pg /var/lib/postgresql rw,relatime - ext4 /dev/mapper/vg0-data rw",
+        "25 22 0:23 / /proc rw,nosuid,nodev,noexec,relatime shared:12 - proc proc rw");
+
+    @Test
+    void mountsAreMatchedOnMajorMinor() {
+        Map<String, DiskIoSampler.Sample> samples = DiskIoSampler.parseDiskstats(DISKSTATS);
+        Map<String, String> mounts = DiskIoSampler.parseMountinfo(MOUNTINFO);
+
+        assertEquals("/", mounts.get(samples.get("mmcblk0p2").deviceId()));
+        assertEquals("/boot/firmware", mounts.get(samples.get("mmcblk0p1").deviceId()));
+        assertEquals("/srv/data,/srv/backup copy", mounts.get(samples.get("dm-0").deviceId()));
+        assertNull(mounts.get(samples.get("nvme0n1").deviceId()));
+        assertNull(samples.get("loop0"));
+    }
+}
@@ -0,0 +1,122 @@
+package systemstatus.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import systemstatus.gto.*;
+
+/**
+ * Sender ekte heartbeats fra HeartbeatSender til HeartbeatListener over 127.0.0.1.
+ */
+class HeartbeatLoopbackTest {
+
+    private static final String SECRET = "delt-hemmelighet";
+
+    private HeartbeatListener listener;
+    private int port;
+
+    @BeforeEach
+    void startListener() throws Exception {
+        listener = new HeartbeatListener();
+        ReflectionTestUtils.setField(listener, "mode", "push");
+        ReflectionTestUtils.setField(listener, "bind", "127.0.0.1");
+        ReflectionTestUtils.setField(listener, "port", 0);
+        ReflectionTestUtils.setField(listener, "secret", SECRET);
+        listener.start();
+        port = listener.localPort();
+    }
+
+    @AfterEach
+    void stopListener() throws Exception {
+        listener.stop();
+    }
+
+    @Test
+    void heartbeatIsReceivedOnLoopback() throws Exception {
+        HeartbeatSender sender = sender("node-a", SECRET);
+        sender.send();
+        sender.close();
+
+        HeartbeatListener.Received received = await();
+        assertNotNull(received);
+        assertEquals("node-a", received.heartbeat().hostName());
+        assertEquals(42.5f, received.heartbeat().cpuTempC());
+        assertEquals(3, received.heartbeat().containers());
+        assertEquals(4000, received.heartbeat().memTotalMb());
+    }
+
+    @Test
+    void heartbeatWithWrongKeyIsDropped() throws Exception {
+        HeartbeatSender forged = sender("forged", "feil-nøkkel");
+        forged.send();
+        forged.close();
+        Thread.sleep(300);
+        assertNull(listener.latest("127.0.0.1"));
+
+        // Lytteren lever fortsatt og tar imot neste gyldige pakke
+        HeartbeatSender sender = sender("node-a", SECRET);
+        sender.send();
+        sender.close();
+        assertEquals("node-a", await().heartbeat().hostName());
+    }
+
+    private HeartbeatListener.Received await() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            HeartbeatListener.Received received = listener.latest("127.0.0.1");
+            if (received != null) return received;
+            Thread.sleep(20);
+        }
+        return null;
+    }
+
+    private HeartbeatSender sender(String hostName, String secret) {
+        HeartbeatSender sender = new HeartbeatSender(new FixedStatus(hostName));
+        ReflectionTestUtils.setField(sender, "target", "127.0.0.1:" + port);
+        ReflectionTestUtils.setField(sender, "secret", secret);
+        return sender;
+    }
+
+    // Faste verdier i stedet for mpstat, /proc og docker
+    private static final class FixedStatus extends SystemStatusService {
+        private final String hostName;
+
+        FixedStatus(String hostName) {
+            super(null, null, null);
+            this.hostName = hostName;
+        }
+
+        @Override
+        public CpuStatusGto getCpu() {
+            return new CpuStatusGto(42.5, 10, 5, 85, false);
+        }
+
+        @Override
+        public MemoryStatusGto getMemory() {
+            return new MemoryStatusGto(4000, 1500, 0, 0);
+        }
+
+        @Override
+        public List<DiskStatusGto> getDisks() {
+            return List.of(new DiskStatusGto("/", 100, 40, 40));
+        }
+
+        @Override
+        public KernelStatusGto getKernel() {
+            return new KernelStatusGto("6.6", "aarch64", hostName);
+        }
+
+        @Override
+        public List<DockerStatusGto> getDockerContainers() {
+            return Collections.nCopies(3, null);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+-- Tabellene slik Cowrie-outputen oppretter dem, før schema.sql har lagt til session_id, event_id og fingerprint.
+-- Brukes av integrasjonstestene og DatasetGenerator, så schema.sql alltid kjøres mot samme utgangspunkt som i drift.
+
+CREATE TABLE IF NOT EXISTS ip_geo (
+    ip TEXT PRIMARY KEY,
+    country TEXT,
+    country_code TEXT,
+    city TEXT,
+    latitude DOUBLE PRECISION,
+    longitude DOUBLE PRECISION
+);
+
+CREATE TABLE IF NOT EXISTS cowrie_sessions (
+    id BIGSERIAL PRIMARY KEY,
+    src_ip TEXT,
+    started_at TIMESTAMPTZ,
+    ended_at TIMESTAMPTZ
+);
+
+CREATE TABLE IF NOT EXISTS cowrie_logins (
+    id BIGSERIAL PRIMARY KEY,
+    timestamp TIMESTAMPTZ,
+    src_ip TEXT,
+    username TEXT,
+    password TEXT,
+    success BOOLEAN
+);
+
+CREATE TABLE IF NOT EXISTS cowrie_commands (
+    id BIGSERIAL PRIMARY KEY,
+    timestamp TIMESTAMPTZ,
+    src_ip TEXT,
+    input TEXT
+);
+
+CREATE TABLE IF NOT EXISTS cowrie_tcpip (
+    id BIGSERIAL PRIMARY KEY,
+    timestamp TIMESTAMPTZ,
+    src_ip TEXT,
+    dst_ip TEXT,
+    dst_port INTEGER,
+    event_type TEXT,
+    data TEXT,
+    ja4h TEXT
+);
+
+CREATE TABLE IF NOT EXISTS cowrie_file_transfers (
+    id BIGSERIAL PRIMARY KEY,
+    timestamp TIMESTAMPTZ,
+    src_ip TEXT,
+    event_type TEXT,
+    filename TEXT,
+    shasum TEXT,
+    duplicate BOOLEAN
+);
+
+CREATE INDEX IF NOT EXISTS cowrie_sessions_src_ip_idx ON cowrie_sessions (src_ip);
+CREATE INDEX IF NOT EXISTS cowrie_sessions_open_idx ON cowrie_sessions (id) WHERE ended_at IS NULL;
+CREATE INDEX IF NOT EXISTS cowrie_logins_src_ip_idx ON cowrie_logins (src_ip);
+CREATE INDEX IF NOT EXISTS cowrie_logins_timestamp_idx ON cowrie_logins (timestamp);
+CREATE INDEX IF NOT EXISTS cowrie_commands_src_ip_idx ON cowrie_commands (src_ip);
+CREATE INDEX IF NOT EXISTS cowrie_commands_timestamp_idx ON cowrie_commands (timestamp);
+CREATE INDEX IF NOT EXISTS cowrie_tcpip_src_ip_idx ON cowrie_tcpip (src_ip);
+CREATE INDEX IF NOT EXISTS cowrie_tcpip_timestamp_idx ON cowrie_tcpip (timestamp);
+CREATE INDEX IF NOT EXISTS cowrie_file_transfers_src_ip_idx ON cowrie_file_transfers (src_ip);
+CREATE INDEX IF NOT EXISTS cowrie_file_transfers_timestamp_idx ON cowrie_file_transfers (timestamp);